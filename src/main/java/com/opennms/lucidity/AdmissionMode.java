@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+/**
+ * What a {@link RequestLimiter} does with a statement that would exceed an in-flight limit.
+ */
+public enum AdmissionMode {
+
+    /** Wait for an in-flight statement to complete. */
+    BLOCK,
+
+    /** Reject the statement with a {@link RequestRejectedException}. */
+    FAIL_FAST;
+
+}
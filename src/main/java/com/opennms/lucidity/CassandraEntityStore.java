@@ -16,20 +16,37 @@
 package com.opennms.lucidity;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.addAll;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.appendAll;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.batch;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.decr;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.gte;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.incr;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.lte;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.prependAll;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.removeAll;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.set;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.setIdx;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.timestamp;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.ttl;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.opennms.lucidity.Schema.BUCKET_COLUMN;
+import static com.opennms.lucidity.Schema.COUNT_COLUMN;
 import static com.opennms.lucidity.Schema.ENTITY;
 import static com.opennms.lucidity.Schema.ID;
+import static com.opennms.lucidity.Schema.PERIOD_COLUMN;
+import static com.opennms.lucidity.Schema.SHARD_COLUMN;
+import static com.opennms.lucidity.Schema.bucketOf;
+import static com.opennms.lucidity.Schema.counterTableName;
+import static com.opennms.lucidity.Schema.indexCountTableName;
 import static com.opennms.lucidity.Schema.indexTableName;
 import static com.opennms.lucidity.Schema.joinColumnName;
 import static com.opennms.lucidity.Schema.joinTableName;
+import static com.opennms.lucidity.Schema.periodOf;
+import static com.opennms.lucidity.Schema.reverseJoinTableName;
 import static java.lang.String.format;
 
 import java.io.IOException;
@@ -37,21 +54,27 @@ import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
@@ -61,94 +84,274 @@ import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.Delete;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.core.querybuilder.Update;
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.opennms.lucidity.RangeCursor.IndexEntry;
+import com.opennms.lucidity.RequestLimiter.Permit;
 import com.opennms.lucidity.Schema.ColumnSpec;
+import com.opennms.lucidity.Schema.CompositeIndexSpec;
+import com.opennms.lucidity.Schema.EmbeddedSpec;
 import com.opennms.lucidity.Schema.OneToManySpec;
+import com.opennms.lucidity.SpeculativeReadPolicy.Attempt;
+import com.opennms.lucidity.TrackedCollections.Tracked;
+import com.opennms.lucidity.TrackedCollections.TrackedList;
+import com.opennms.lucidity.TrackedCollections.TrackedMap;
+import com.opennms.lucidity.TrackedCollections.TrackedSet;
+import com.opennms.lucidity.annotations.CascadeType;
+import com.opennms.lucidity.annotations.IndexType;
 import com.opennms.lucidity.annotations.UpdateStrategy;
 
 
-// FIXME: Cache schemas
-// FIXME: Support collection types.
-
 /**
  * Apache Cassandra implementation of {@link EntityStore}.
+ * <p>
+ * Instances are thread-safe, and a single store may be shared by any number of threads (a request
+ * pool, for example). Tracked instances are held by identity, and weakly, so the state recorded
+ * for one object never bleeds into another, and is discarded once the application lets go of the
+ * object. Calls that operate on the same tracked instance (<code>create</code>,
+ * <code>update</code>, and <code>delete</code>) are serialized; each <code>update</code> diffs
+ * against the state actually written by the call before it, so no change is lost between
+ * concurrent updates. The entity objects themselves are not synchronized, it is up to the
+ * application to safely publish any changes it makes to an instance shared between threads.
+ * Once closed, a store rejects all further operations, from every thread.
  * 
  * @author eevans
  */
 public class CassandraEntityStore implements EntityStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(CassandraEntityStore.class);
+    private static final int INSTANCE_LOCK_STRIPES = 64;
+    private static final int COUNT_FETCH_SIZE = 5000;
+    private static final int RELATION_PAGE_SIZE = 1000;
+    private static final int RELATION_BATCH_SIZE = 500;
+    private static final int DEFAULT_TTL = -1;
+    private static final WriteTimestamps TIMESTAMPS = new WriteTimestamps();
 
     private final Session m_session;
-    private final ConsistencyLevel m_consistency;
-    private final ConcurrentMap<Integer, Record> m_instanceCache = Maps.newConcurrentMap();
-
-    private boolean m_isOpen;
+    private final Tables m_tables;
+    private final ConsistencyPolicy m_consistency;
+    private final RequestLimiter m_limiter;
+    private final SpeculativeReadPolicy m_speculativeReads;
+    private final WriteRetryPolicy m_writeRetries;
+    private final ConcurrentMap<Class<?>, Schema> m_schemas = Maps.newConcurrentMap();
+    private final ConcurrentMap<Object, Record> m_instanceCache = new MapMaker().weakKeys().makeMap();
+    private final Striped<Lock> m_instanceLocks = Striped.lock(INSTANCE_LOCK_STRIPES);
+    private final AtomicBoolean m_isOpen = new AtomicBoolean(true);
 
     public CassandraEntityStore(Session session, ConsistencyLevel consistency) {
-        m_session = session;
-        m_consistency = consistency;
-        m_isOpen = true;
+        this(session, null, new ConsistencyPolicy(consistency), new RequestLimiter(), null, null);
+    }
+
+    /**
+     * @param session
+     *            driver session
+     * @param keyspace
+     *            the keyspace the session is connected to, (used to look up the table metadata
+     *            needed to route statements), or null
+     * @param consistency
+     *            default consistency levels
+     * @param limiter
+     *            admission control for statements
+     * @param speculativeReads
+     *            policy for hedging reads, or null to disable
+     * @param writeRetries
+     *            policy for retrying timed out writes, or null to disable
+     */
+    public CassandraEntityStore(Session session, String keyspace, ConsistencyPolicy consistency, RequestLimiter limiter, SpeculativeReadPolicy speculativeReads, WriteRetryPolicy writeRetries) {
+        m_session = checkNotNull(session, "session argument");
+        m_tables = new Tables(session.getCluster().getMetadata(), keyspace);
+        m_consistency = checkNotNull(consistency, "consistency argument");
+        m_limiter = checkNotNull(limiter, "limiter argument");
+        m_speculativeReads = speculativeReads;
+        m_writeRetries = writeRetries;
     }
 
     private Schema getSchema(Object object) {
-        return Schema.fromClass(object.getClass());
+        return getSchema(object.getClass());
+    }
+
+    Schema getSchema(Class<?> cls) {
+        Schema schema = m_schemas.get(cls);
+
+        if (schema == null) {
+            Schema existing = m_schemas.putIfAbsent(cls, schema = Schema.fromClass(cls));
+            if (existing != null) schema = existing;
+        }
+
+        return schema;
     }
 
     private com.datastax.driver.core.ConsistencyLevel getDriverConsistencyLevel(ConsistencyLevel cl) {
         return com.datastax.driver.core.ConsistencyLevel.fromCode(cl.getDriverCode());
     }
 
-    private Integer getInstanceID(Object o) {
-        return System.identityHashCode(o);
+    ConsistencyPolicy getConsistencyPolicy() {
+        return m_consistency;
+    }
+
+    /** Returns the lock guarding the tracked state of an instance (keyed on identity). */
+    private Lock getInstanceLock(Object o) {
+        return m_instanceLocks.get(System.identityHashCode(o));
     }
 
     @Override
     public <T> T create(T object) {
-        return create(object, m_consistency);
+        checkNotNull(object, "object argument");
+        return create(object, m_consistency.getWrite(object.getClass()));
     }
 
     @Override
     public <T> T create(T object, ConsistencyLevel consistency) {
+        return create(object, consistency, DEFAULT_TTL);
+    }
+
+    @Override
+    public <T> T create(T object, int ttl) {
+        checkNotNull(object, "object argument");
+        checkArgument(ttl >= 0, "ttl must not be negative");
+        return create(object, m_consistency.getWrite(object.getClass()), ttl);
+    }
+
+    @Override
+    public <T> T create(T object, ConsistencyLevel consistency, int ttl) {
 
         checkNotNull(object, "object argument");
         checkNotNull(consistency, "consistency argument");
-        checkState(m_isOpen, format("%s is closed", getClass().getSimpleName()));
+        checkArgument(ttl >= 0 || ttl == DEFAULT_TTL, "ttl must not be negative");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
         checkArgument(
                 object.getClass().isAnnotationPresent(ENTITY),
                 format("%s not annotated with @%s", getClass().getSimpleName(), ENTITY.getCanonicalName()));
 
+        Lock lock = getInstanceLock(object);
+        lock.lock();
+
+        Map<Object, UUID> cascaded = Maps.newIdentityHashMap();
+
+        try {
+            return doCreate(object, consistency, ttl, cascaded);
+        }
+        catch (RuntimeException e) {
+            revertCascaded(cascaded);
+            throw e;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T doCreate(T object, ConsistencyLevel consistency, int requestedTTL, Map<Object, UUID> cascaded) {
+
         Schema schema = getSchema(object);
+        int ttl = getTTL(schema, requestedTTL);
 
         checkArgument(
                 schema.getID().getValue(object) == null,
                 format("property annotated with @%s must be null", ID.getCanonicalName()));
 
-        // Object persistence (incl. indices)
         UUID id = UUID.randomUUID();
-        Batch batch = batch();
-        Insert insertStatement = insertInto(schema.getTableName()).value(schema.getID().getName(), id);
+        List<RegularStatement> statements = Lists.newArrayList();
+        List<RegularStatement> relationStatements = Lists.newArrayList();
+        List<RegularStatement> counts = Lists.newArrayList();
+
+        addCreate(schema, object, id, ttl, statements, relationStatements, counts, cascaded);
+
+        // Initial counter values; Written first, a failure leaves nothing but an unreferenced row.
+        List<RegularStatement> counters = Lists.newArrayList();
+        addCounters(counters, schema, id, snapshot(schema, object), null);
+
+        for (Entry<Object, UUID> item : cascaded.entrySet()) {
+            Schema s = getSchema(item.getKey());
+            addCounters(counters, s, item.getValue(), snapshot(s, item.getKey()), null);
+        }
+
+        long timestamp = TIMESTAMPS.next();
+        Batch batch = stamp(batch(statements.toArray(new RegularStatement[statements.size()])), timestamp);
+        List<Batch> relationBatches = batchRelations(batch, relationStatements, timestamp);
+
+        // A create that writes a list can't be resent, (nor can those of entities created by cascade).
+        boolean idempotent = isResendable(schema, object);
+
+        for (Object item : cascaded.keySet()) {
+            idempotent &= isResendable(getSchema(item), item);
+        }
+
+        executeCounters(schema, counters, consistency);
+        executeWrite(schema, batch, consistency, idempotent);
+        trackCascaded(cascaded);
+        executeBatches(schema, relationBatches, consistency);
+        executeCounts(schema, counts, consistency);
+
+        schema.getID().setValue(object, id);
+        track(schema, object, snapshot(schema, object));
+
+        return object;
+    }
+
+    /**
+     * Adds the statements that create an entity; The base row first (a batch is routed by its first
+     * statement), then its index rows, and those of any entities created by cascade. The entity's
+     * own rows are written with its time-to-live, (those created by cascade, with theirs).
+     */
+    private void addCreate(Schema schema, Object object, UUID id, int ttl, List<RegularStatement> statements, List<RegularStatement> relationStatements, List<RegularStatement> counts, Map<Object, UUID> cascaded) {
+
+        int first = statements.size();
+
+        // Object persistence (incl. indices)
+        Insert insertStatement = m_tables.insertInto(schema.getTableName()).value(schema.getID().getName(), id);
+        statements.add(insertStatement);
 
         for (ColumnSpec colSpec : schema.getColumns()) {
+
+            Object columnValue = colSpec.getValue(object);
+
+            // A collection already tracked is written as it stands, (its recorded changes with it).
+            if (columnValue instanceof Tracked) {
+                columnValue = ((Tracked) columnValue).drain(true);
+            }
+
+            insertStatement.value(colSpec.getName(), columnValue);
             
-            insertStatement.value(colSpec.getName(), colSpec.getValue(object));
-            
-            if (colSpec.isIndexed()) {
-                String tableName = indexTableName(schema.getTableName(), colSpec.getName());
-                batch.add(
-                        insertInto(tableName)
-                            .value(colSpec.getName(), colSpec.getValue(object))
-                            .value(joinColumnName(schema.getTableName()), id)
-                );
+            if (colSpec.hasIndexTable()) {
+                Map<String, Object> covered = getCoveredValues(schema, colSpec, object);
+
+                for (Object value : colSpec.getIndexedValues(colSpec.getValue(object))) {
+                    Optional<Insert> insert = insertIndexRow(schema, colSpec, value, id, covered);
+                    if (insert.isPresent()) statements.add(insert.get());
+                    addIndexCount(counts, schema, colSpec, value, 1);
+                }
             }
         }
 
-        batch.add(insertStatement);
+        for (EmbeddedSpec embeddedSpec : schema.getEmbeddeds()) {
+            insertStatement.value(embeddedSpec.getName(), embeddedSpec.encode(embeddedSpec.getValue(object)));
+        }
+
+        for (CompositeIndexSpec indexSpec : schema.getCompositeIndexes()) {
+            Optional<Insert> insert = insertIndexRow(schema, indexSpec, getValues(indexSpec, object), id);
+            if (insert.isPresent()) statements.add(insert.get());
+        }
+
+        applyTTL(statements.subList(first, statements.size()), ttl);
+        addCascadedCreates(schema, object, statements, relationStatements, counts, cascaded);
+
+        int firstRelation = relationStatements.size();
 
         // One-to-Many relationship persistence
         for (OneToManySpec relationSpec : schema.getOneToManys()) {
@@ -160,348 +363,1681 @@ public class CassandraEntityStore implements EntityStore {
                 continue;
             }
 
-            for (Object item : (Collection<?>) relations) {
-                UUID relationID = (UUID) s.getID().getValue(item);
+            Set<UUID> relationIDs = getRelationIDs(s, (Collection<?>) relations);
+
+            if (relationSpec.isIdSet()) {
+                insertStatement.value(relationSpec.getColumnName(), relationIDs);
+            }
+            else {
+                String joinTable = joinTableName(schema.getTableName(), s.getTableName());
+
+                for (UUID relationID : relationIDs) {
+                    relationStatements.add(
+                            m_tables.insertInto(joinTable)
+                                .value(joinColumnName(schema.getTableName()), id)
+                                .value(joinColumnName(s.getTableName()), relationID)
+                    );
+                }
+            }
 
-                if (relationID == null) {
-                    throw new IllegalStateException(
-                            "encountered relation with null ID property (entity not persisted?)");
+            if (relationSpec.isReversed()) {
+                for (UUID relationID : relationIDs) {
+                    relationStatements.add(insertReverseRow(schema, relationSpec, id, relationID));
                 }
+            }
 
-                String joinTable = joinTableName(schema.getTableName(), s.getTableName());
+        }
 
-                batch.add(
-                        insertInto(joinTable)
-                            .value(joinColumnName(schema.getTableName()), id)
-                            .value(joinColumnName(s.getTableName()), relationID)
-                );
+        applyTTL(relationStatements.subList(firstRelation, relationStatements.size()), ttl);
+    }
+
+    /**
+     * Adds the statements that create the unsaved (null ID) entities of an object's relations, where
+     * they cascade creation. Each is assigned its ID here, and recorded in <code>cascaded</code>, and
+     * is written with the default time-to-live of its own table, (not that of the object).
+     */
+    private void addCascadedCreates(Schema schema, Object object, List<RegularStatement> statements, List<RegularStatement> relationStatements, List<RegularStatement> counts, Map<Object, UUID> cascaded) {
+
+        for (OneToManySpec relationSpec : schema.getOneToManys()) {
+            Schema s = relationSpec.getSchema();
+            Collection<?> relations = relationSpec.getValue(object);
+
+            if (relations == null || !relationSpec.cascades(CascadeType.CREATE)) {
+                continue;
+            }
+
+            for (Object item : relations) {
+                if (item != null && s.getID().getValue(item) == null) {
+                    UUID id = UUID.randomUUID();
+                    s.getID().setValue(item, id);
+                    cascaded.put(item, id);
+                    addCreate(s, item, id, getTTL(s, DEFAULT_TTL), statements, relationStatements, counts, cascaded);
+                }
             }
+        }
+    }
 
+    /** Tracks the entities created by cascade, once written. */
+    private void trackCascaded(Map<Object, UUID> cascaded) {
+        for (Object item : cascaded.keySet()) {
+            Schema schema = getSchema(item);
+            track(schema, item, snapshot(schema, item));
         }
 
-        executeStatement(batch, consistency);
+        // Written; No longer to be reverted if the remainder of the write fails.
+        cascaded.clear();
+    }
 
-        schema.getID().setValue(object, id);
-        cacheInstance(object);
-        
-        return object;
+    /** Reverts the IDs assigned to entities for creation by cascade, (the write having failed). */
+    private void revertCascaded(Map<Object, UUID> cascaded) {
+        for (Object item : cascaded.keySet()) {
+            getSchema(item).getID().setValue(item, null);
+        }
     }
 
     @Override
     public <T> void update(T object) {
-        update(object, m_consistency);
+        checkNotNull(object, "object argument");
+        update(object, m_consistency.getWrite(object.getClass()));
     }
 
     @Override
     public <T> void update(T object, ConsistencyLevel consistency) {
+        update(object, consistency, DEFAULT_TTL);
+    }
+
+    @Override
+    public <T> void update(T object, int ttl) {
+        checkNotNull(object, "object argument");
+        checkArgument(ttl >= 0, "ttl must not be negative");
+        update(object, m_consistency.getWrite(object.getClass()), ttl);
+    }
+
+    @Override
+    public <T> void update(T object, ConsistencyLevel consistency, int ttl) {
 
         checkNotNull(object, "object argument");
         checkNotNull(consistency, "consistency argument");
-        checkState(m_isOpen, format("%s is closed", getClass().getSimpleName()));
+        checkArgument(ttl >= 0 || ttl == DEFAULT_TTL, "ttl must not be negative");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
 
-        Record record = m_instanceCache.get(getInstanceID(object));
+        Lock lock = getInstanceLock(object);
+        lock.lock();
+
+        Map<Object, UUID> cascaded = Maps.newIdentityHashMap();
+        List<Tracked> drained = Lists.newArrayList();
+
+        // Fields dirtied from here on, (even those drained now), are written by the next update.
+        Set<String> dirty = null;
+
+        if (object instanceof DirtyTracking) {
+            dirty = Sets.newHashSet(((DirtyTracking) object).drainDirtyFields());
+        }
+
+        try {
+            doUpdate(object, consistency, ttl, dirty, cascaded, drained);
+        }
+        catch (RuntimeException e) {
+            revertCascaded(cascaded);
+
+            if (dirty != null) {
+                ((DirtyTracking) object).markDirtyFields(dirty);
+            }
+
+            // Changes drained from collections, but never written, are written whole by the next update.
+            for (Tracked tracked : drained) {
+                tracked.overwrite();
+            }
+
+            throw e;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> void doUpdate(T object, ConsistencyLevel consistency, int requestedTTL, Set<String> dirty, Map<Object, UUID> cascaded, List<Tracked> drained) {
+
+        Record record = m_instanceCache.get(object);
 
         if (record == null) {
             throw new IllegalStateException("untracked object");
         }
 
         Schema schema = getSchema(object);
+        int ttl = getTTL(schema, requestedTTL);
+
+        // With a time-to-live, everything is rewritten, (so that all of it expires together).
+        boolean rewrite = ttl > 0;
+
+        // Unsaved entities added to relations that cascade creation are created in the same write.
+        List<RegularStatement> cascadeStatements = Lists.newArrayList();
+        List<RegularStatement> relationStatements = Lists.newArrayList();
+        List<RegularStatement> counts = Lists.newArrayList();
+
+        addCascadedCreates(schema, object, cascadeStatements, relationStatements, counts, cascaded);
+
+        // Those added from here on are the object's own, (and take its time-to-live).
+        int firstRelation = relationStatements.size();
+
+        // Diff against a snapshot taken up-front; This is what gets written, and it is what must be
+        // recorded as the new state, (changes made concurrently to this call belong to the next).
+        // Entities that track their own changes are only compared on the fields reported dirty.
+        if (dirty != null) {
+            checkDirtyFields(schema, dirty);
+        }
+
+        Record snapshot = snapshot(schema, object, record, dirty);
         boolean needsUpdate = false;
 
-        Update updateStatement = QueryBuilder.update(schema.getTableName());
-        Batch batchStatement = batch();
+        Update updateStatement = m_tables.update(schema.getTableName());
+        updateStatement.where(eq(schema.getID().getName(), schema.getID().getValue(object)));
+
+        // Statements are batched base row first, (the batch is routed by its first statement).
+        List<RegularStatement> statements = Lists.newArrayList();
+        List<RegularStatement> indexStatements = Lists.newArrayList();
+
+        // Whether the write can be retried, (writes of a list can't).
+        boolean idempotent = true;
 
         // Begin with standard (i.e. non-collection) columns.
         for (ColumnSpec colSpec : schema.getStandardColumns()) {
 
             Object past, current;
-            current = colSpec.getValue(object);
+            current = snapshot.getColumns().get(colSpec.getName());
             past = record.getColumns().get(colSpec.getName());
 
             if (current != null && !current.equals(past)) {
                 needsUpdate = true;
                 updateStatement.with(set(colSpec.getName(), current));
+            }
+        }
 
-                // Update index, if applicable
-                if (colSpec.isIndexed()) {
-                    batchStatement.add(
-                            insertInto(indexTableName(schema.getTableName(), colSpec.getName()))
-                                .value(colSpec.getName(), colSpec.getValue(object))
-                                .value(joinColumnName(schema.getTableName()), schema.getID().getValue(object))
-                    );
-                    batchStatement.add(
-                            QueryBuilder.delete().from(indexTableName(schema.getTableName(), colSpec.getName()))
-                                .where(eq(colSpec.getName(), past))
-                                .and(eq(joinColumnName(schema.getTableName()), schema.getID().getValue(object)))
-                    );
-                }
+        // Column indexes are rewritten when the indexed value, or any value they cover, changes.
+        Map<String, Object> written = getWrittenValues(schema, record, snapshot);
+
+        for (ColumnSpec colSpec : schema.getStandardColumns()) {
+
+            if (!colSpec.hasIndexTable()) {
+                continue;
+            }
+
+            UUID id = schema.getID().getValue(object);
+            Object past = record.getColumns().get(colSpec.getName());
+            Object current = written.get(colSpec.getName());
+            Map<String, Object> covered = getCoveredValues(schema, colSpec, written);
+            boolean moved = !Objects.equal(current, past);
+
+            if (rewrite || moved || !covered.equals(getCoveredValues(schema, colSpec, record.getColumns()))) {
+                Optional<Insert> insert = insertIndexRow(schema, colSpec, current, id, covered);
+                if (insert.isPresent()) indexStatements.add(insert.get());
+            }
+
+            if (moved) {
+                Optional<Delete.Where> delete = deleteIndexRow(schema, colSpec, past, id);
+                if (delete.isPresent()) indexStatements.add(delete.get());
+                addIndexCount(counts, schema, colSpec, current, 1);
+                addIndexCount(counts, schema, colSpec, past, -1);
             }
         }
 
-        updateStatement.where(eq(schema.getID().getName(), schema.getID().getValue(object)));
+        // Composite indexes are rewritten when any of their columns change.
+        for (CompositeIndexSpec indexSpec : schema.getCompositeIndexes()) {
+            List<Object> past = getValues(indexSpec, record.getColumns());
+            List<Object> current = Lists.newArrayList();
+
+            for (int i = 0; i < past.size(); i++) {
+                // Null values are never written, the column retains its past value.
+                Object value = snapshot.getColumns().get(indexSpec.getColumns().get(i).getName());
+                current.add((value != null) ? value : past.get(i));
+            }
+
+            UUID id = schema.getID().getValue(object);
+
+            if (rewrite || !current.equals(past)) {
+                Optional<Insert> insert = insertIndexRow(schema, indexSpec, current, id);
+                if (insert.isPresent()) indexStatements.add(insert.get());
+            }
+
+            if (!current.equals(past)) {
+                Optional<Delete.Where> delete = deleteIndexRow(schema, indexSpec, past, id);
+                if (delete.isPresent()) indexStatements.add(delete.get());
+            }
+        }
+
+        if (rewrite) {
+            // As an insert, (which also renews the row's own liveness).
+            Insert insert = m_tables.insertInto(schema.getTableName()).value(schema.getID().getName(), schema.getID().getValue(object));
+
+            for (ColumnSpec colSpec : schema.getStandardColumns()) {
+                Object value = written.get(colSpec.getName());
+                if (value != null) insert.value(colSpec.getName(), value);
+            }
 
-        if (needsUpdate) {
-            batchStatement.add(updateStatement);
+            statements.add(insert);
+        }
+        else if (needsUpdate) {
+            statements.add(updateStatement);
         }
 
         // Next, collection columns ...
         for (ColumnSpec colSpec : schema.getCollectionColumns()) {
 
+            if (colSpec.isChangeRecorded()) {
+                idempotent &= addRecordedChanges(schema, colSpec, object, statements, rewrite, drained);
+                continue;
+            }
+
             Object past, current;
-            current = colSpec.getValue(object);
+            current = snapshot.getColumns().get(colSpec.getName());
             past = record.getColumns().get(colSpec.getName());
 
-            if (current != null && !current.equals(past)) {
+            if (current != null && (rewrite || !current.equals(past))) {
 
-                if (colSpec.getCollectionUpdateStrategy().equals(UpdateStrategy.ELEMENT)) {
-                    Collection<RegularStatement> statements = diffCollection(
+                // A list, whether written whole or element by element, can't be resent.
+                idempotent &= !(current instanceof List);
+
+                if (!rewrite && colSpec.getCollectionUpdateStrategy().equals(UpdateStrategy.ELEMENT)) {
+                    statements.addAll(diffCollection(
                             schema.getTableName(),
                             colSpec.getName(),
                             eq(schema.getID().getName(), schema.getID().getValue(object)),
                             past,
-                            current);
-                    for (RegularStatement statement : statements) {
-                        batchStatement.add(statement);
-                    }
+                            current));
                 }
                 else {
-                    batchStatement.add(
-                            insertInto(schema.getTableName())
+                    statements.add(
+                            m_tables.insertInto(schema.getTableName())
                                 .value(colSpec.getName(), current)
                                 .value(schema.getID().getName(), schema.getID().getValue(object))
                     );
                 }
 
+                // Element indexes; Only elements added or removed are (un)indexed.
+                if (colSpec.hasIndexTable()) {
+                    UUID id = schema.getID().getValue(object);
+                    Set<?> currentValues = colSpec.getIndexedValues(current);
+                    Set<?> pastValues = colSpec.getIndexedValues(past);
+
+                    // (Counted indexes can't expire, so a rewrite never counts a value twice.)
+                    for (Object value : rewrite ? currentValues : Sets.difference(currentValues, pastValues)) {
+                        Optional<Insert> insert = insertIndexRow(schema, colSpec, value, id, Collections.<String, Object> emptyMap());
+                        if (insert.isPresent()) indexStatements.add(insert.get());
+                        addIndexCount(counts, schema, colSpec, value, 1);
+                    }
+
+                    for (Object value : Sets.difference(pastValues, currentValues)) {
+                        Optional<Delete.Where> delete = deleteIndexRow(schema, colSpec, value, id);
+                        if (delete.isPresent()) indexStatements.add(delete.get());
+                        addIndexCount(counts, schema, colSpec, value, -1);
+                    }
+                }
+
             }
 
         }
 
-        // Finally, process one-to-many mappings
+        // ... and embedded objects, (only those added or removed).
+        for (EmbeddedSpec embeddedSpec : schema.getEmbeddeds()) {
+
+            Object past, current;
+            current = snapshot.getColumns().get(embeddedSpec.getName());
+            past = record.getColumns().get(embeddedSpec.getName());
+
+            if (current != null && rewrite) {
+                statements.add(
+                        m_tables.update(schema.getTableName())
+                            .with(set(embeddedSpec.getName(), current))
+                            .where(eq(schema.getID().getName(), schema.getID().getValue(object))));
+            }
+            else if (current != null && !current.equals(past)) {
+                statements.addAll(diffSet(
+                        schema.getTableName(),
+                        embeddedSpec.getName(),
+                        eq(schema.getID().getName(), schema.getID().getValue(object)),
+                        (past != null) ? (Set<?>) past : Collections.emptySet(),
+                        (Set<?>) current));
+            }
+        }
+
+        // Then the index rows (for other partitions) ...
+        statements.addAll(indexStatements);
+
+        // Then the one-to-many mappings; These are diffed by ID.
+
         for (OneToManySpec relSpec : schema.getOneToManys()) {
             Schema s = relSpec.getSchema();
 
-            Collection<?> past, current;
-            current = relSpec.getValue(object);
-            past = (record != null) ? record.getOneToManys().get(relSpec.getName()) : null;
+            Set<UUID> pastIDs, currentIDs;
+            currentIDs = snapshot.getOneToManys().get(relSpec.getName());
+            pastIDs = record.getOneToManys().get(relSpec.getName());
 
-            if (current == null) {
-                current = Collections.emptySet();
+            if (currentIDs == null) {
+                currentIDs = Collections.emptySet();
             }
             
-            if (past == null) {
-                past = Collections.emptySet();
+            if (pastIDs == null) {
+                pastIDs = Collections.emptySet();
             }
 
-            SetView<?> toInsert = Sets.difference(Sets.newHashSet(current), Sets.newHashSet(past));
-            SetView<?> toRemove = Sets.difference(Sets.newHashSet(past), Sets.newHashSet(current));
+            UUID id = schema.getID().getValue(object);
+            Set<UUID> toInsert = rewrite ? currentIDs : Sets.difference(currentIDs, pastIDs);
+            Set<UUID> toRemove = Sets.difference(pastIDs, currentIDs);
 
-            String joinTable = joinTableName(schema.getTableName(), s.getTableName());
+            // Related IDs stored on the entity row; Only those added or removed are written.
+            if (relSpec.isIdSet()) {
+                Clause whereClause = eq(schema.getID().getName(), id);
 
-            for (Object o : toInsert) {
-                if (s.getID().getValue(o) == null) {
-                    throw new IllegalStateException(
-                            "encountered relation with null ID property (entity not persisted?)");
+                if (rewrite) {
+                    statements.add(m_tables.update(schema.getTableName()).with(set(relSpec.getColumnName(), currentIDs)).where(whereClause));
+                }
+                else {
+                    statements.addAll(diffSet(schema.getTableName(), relSpec.getColumnName(), whereClause, pastIDs, currentIDs));
                 }
-                batchStatement.add(insertInto(joinTable)
-                        .value(joinColumnName(schema.getTableName()), schema.getID().getValue(object))
-                        .value(joinColumnName(s.getTableName()), s.getID().getValue(o)));
             }
+            else {
+                String joinTable = joinTableName(schema.getTableName(), s.getTableName());
 
-            for (Object o : toRemove) {
-                if (s.getID().getValue(o) == null) {
-                    throw new IllegalStateException(
-                            "encountered relation with null ID property (entity not persisted?)");
+                for (UUID relationID : toInsert) {
+                    relationStatements.add(m_tables.insertInto(joinTable)
+                            .value(joinColumnName(schema.getTableName()), id)
+                            .value(joinColumnName(s.getTableName()), relationID));
                 }
-                batchStatement.add(
-                        QueryBuilder.delete().from(joinTable)
-                            .where(eq(joinColumnName(schema.getTableName()), schema.getID().getValue(object)))
-                                .and(eq(joinColumnName(s.getTableName()), s.getID().getValue(o)))
-                );
-            }
-        }
 
-        executeStatement(batchStatement, consistency);
-        cacheInstance(object);
+                for (UUID relationID : toRemove) {
+                    relationStatements.add(
+                            m_tables.from(QueryBuilder.delete(), joinTable)
+                                .where(eq(joinColumnName(schema.getTableName()), id))
+                                    .and(eq(joinColumnName(s.getTableName()), relationID))
+                    );
+                }
+            }
 
-    }
+            if (relSpec.isReversed()) {
+                for (UUID relationID : toInsert) {
+                    relationStatements.add(insertReverseRow(schema, relSpec, id, relationID));
+                }
 
-    private Collection<RegularStatement> diffCollection(String table, String column, Clause whereClause, Object past, Object present) {
-        if (past instanceof Set<?>) {
-            return diffSet(table, column, whereClause, (Set<?>) past, (Set<?>) present);
-        }
-        else if (past instanceof Map<?, ?>) {
-            return diffMap(table, column, whereClause, (Map<?, ?>) past, (Map<?, ?>) present);
+                for (UUID relationID : toRemove) {
+                    relationStatements.add(deleteReverseRow(schema, relSpec, id, relationID));
+                }
+            }
         }
-        else {
-            throw new RuntimeException("unknown collection type!");
+
+        // Counters are incremented by their change, (and those of entities created by cascade).
+        List<RegularStatement> counters = Lists.newArrayList();
+        addCounters(counters, schema, schema.getID().getValue(object), snapshot, record);
+
+        for (Entry<Object, UUID> item : cascaded.entrySet()) {
+            Schema s = getSchema(item.getKey());
+            addCounters(counters, s, item.getValue(), snapshot(s, item.getKey()), null);
         }
-    }
 
-    private Collection<RegularStatement> diffSet(String table, String column, Clause whereClause, Set<?> past,
-            Set<?> present) {
+        applyTTL(statements, ttl);
+        applyTTL(relationStatements.subList(firstRelation, relationStatements.size()), ttl);
 
-        List<RegularStatement> queries = Lists.newArrayList();
+        // ... and last, any entities created by cascade, (already given their own time-to-live).
+        statements.addAll(cascadeStatements);
 
-        Set<?> removes = Sets.newHashSet(past);
-        removes.removeAll(present);
+        long timestamp = TIMESTAMPS.next();
+        Batch batchStatement = stamp(batch(statements.toArray(new RegularStatement[statements.size()])), timestamp);
+        List<Batch> relationBatches = batchRelations(batchStatement, relationStatements, timestamp);
 
-        if (!removes.isEmpty()) {
-            queries.add(QueryBuilder.update(table).with(removeAll(column, removes)).where(whereClause));
-        }
+        executeWrite(schema, batchStatement, consistency, idempotent);
+        drained.clear();
+        trackCascaded(cascaded);
+        executeBatches(schema, relationBatches, consistency);
 
-        Set<?> adds = Sets.newHashSet(present);
-        adds.removeAll(past);
+        // Recorded before the increments are applied; Were they to fail (or time out, having been
+        // applied), a retried update mustn't apply them a second time.
+        attach(schema, object, snapshot);
+        executeCounters(schema, counters, consistency);
+        executeCounts(schema, counts, consistency);
 
-        if (!adds.isEmpty()) {
-            queries.add(QueryBuilder.update(table).with(addAll(column, adds)).where(whereClause));
+    }
+
+    /**
+     * True if a collection can be written whole more than once; Each element of a list literal is
+     * given a new (server generated) cell every time it is written, so a list written twice has its
+     * elements twice, (client-side timestamps notwithstanding).
+     */
+    static boolean isResendable(Object collection) {
+        return !(collection instanceof List) || ((List<?>) collection).isEmpty();
+    }
+
+    /** True if the create of an entity can be sent more than once, (it writes no list). */
+    static boolean isResendable(Schema schema, Object object) {
+
+        for (ColumnSpec colSpec : schema.getCollectionColumns()) {
+            if (!isResendable(colSpec.getValue(object))) {
+                return false;
+            }
         }
 
-        return queries;
+        return true;
     }
 
-    private Collection<RegularStatement> diffMap(String table, String column, Clause whereClause, Map<?, ?> past,
-            Map<?, ?> present) {
+    /** Resolves a requested time-to-live, (the entity's default, if none was). */
+    private int getTTL(Schema schema, int requested) {
 
-        List<RegularStatement> queries = Lists.newArrayList();
+        int ttl = (requested == DEFAULT_TTL) ? schema.getTTL() : requested;
 
-        Set<?> removed = Sets.newHashSet(past.keySet());
-        removed.removeAll(present.keySet());
+        checkArgument(
+                ttl == 0 || schema.isExpirable(),
+                format("%s cannot expire; counters (and counted indexes) cannot be written with a ttl", schema.getTableName()));
 
-        if (!removed.isEmpty()) {
-            Delete.Selection delete = QueryBuilder.delete();
+        return ttl;
+    }
 
-            for (Object o : removed) {
-                delete.mapElt(column, o);
-            }
+    /** Applies a time-to-live to the inserts and updates among statements, (deletes take none). */
+    private void applyTTL(List<RegularStatement> statements, int ttl) {
 
-            queries.add(delete.from(table).where(whereClause));
+        if (ttl == 0) {
+            return;
         }
 
-        Set<Entry<?, ?>> changed = Sets.<Entry<?, ?>> newHashSet(present.entrySet());
-        changed.removeAll(past.entrySet());
+        for (RegularStatement statement : statements) {
+            if (statement instanceof Insert) {
+                ((Insert) statement).using(ttl(ttl));
+            }
+            else if (statement instanceof Update.Where) {
+                ((Update.Where) statement).using(ttl(ttl));
+            }
+        }
+    }
 
-        if (!changed.isEmpty()) {
-            Update update = QueryBuilder.update(table);
+    /** IDs of related entities, (which must already be persisted). */
+    private Set<UUID> getRelationIDs(Schema schema, Collection<?> relations) {
+        Set<UUID> ids = Sets.newHashSet();
 
-            for (Entry<?, ?> entry : changed) {
-                update.with(QueryBuilder.put(column, entry.getKey(), entry.getValue()));
+        for (Object item : relations) {
+            UUID id = schema.getID().getValue(item);
+
+            if (id == null) {
+                throw new IllegalStateException("encountered relation with null ID property (entity not persisted?)");
             }
 
-            queries.add(update.where(whereClause));
+            ids.add(id);
         }
 
-        return queries;
+        return ids;
     }
 
-    @Override
-    public <T> Optional<T> read(Class<T> cls, UUID id) {
-        return read(cls, id, m_consistency);
+    /** Reverse relation row insert, (mapping a related entity back to its owner). */
+    private Insert insertReverseRow(Schema schema, OneToManySpec relSpec, UUID id, UUID relationID) {
+        return m_tables.insertInto(reverseJoinTableName(schema.getTableName(), relSpec.getSchema().getTableName()))
+                .value(joinColumnName(relSpec.getSchema().getTableName()), relationID)
+                .value(joinColumnName(schema.getTableName()), id);
     }
 
-    @Override
-    public <T> Optional<T> read(Class<T> cls, UUID id, ConsistencyLevel consistency) {
-
-        checkNotNull(cls, "class argument");
-        checkNotNull(id, "id argument");
-        checkNotNull(consistency, "consistency argument");
-        checkState(m_isOpen, format("%s is closed", getClass().getSimpleName()));
+    /** Reverse relation row delete. */
+    private Delete.Where deleteReverseRow(Schema schema, OneToManySpec relSpec, UUID id, UUID relationID) {
+        return m_tables.from(QueryBuilder.delete(), reverseJoinTableName(schema.getTableName(), relSpec.getSchema().getTableName()))
+                .where(eq(joinColumnName(relSpec.getSchema().getTableName()), relationID))
+                .and(eq(joinColumnName(schema.getTableName()), id));
+    }
 
-        T instance = Util.newInstance(cls);
+    /**
+     * Returns the values of the standard columns as they stand once an update is written; Null
+     * values are never written, those columns retain their past values.
+     */
+    private Map<String, Object> getWrittenValues(Schema schema, Record record, Record snapshot) {
+        Map<String, Object> values = Maps.newHashMap();
 
-        Schema schema = getSchema(instance);
-        Statement selectStatement = select().from(schema.getTableName()).where(eq(schema.getID().getName(), id));
-        selectStatement.setConsistencyLevel(getDriverConsistencyLevel(consistency));
-        ResultSet results = executeStatement(selectStatement, consistency);
-        Row row = results.one();
+        for (ColumnSpec colSpec : schema.getStandardColumns()) {
+            Object value = snapshot.getColumns().get(colSpec.getName());
+            values.put(colSpec.getName(), (value != null) ? value : record.getColumns().get(colSpec.getName()));
+        }
 
-        checkState(results.isExhausted(), "query returned more than one row");
-        if (row == null) return Optional.absent();
+        return values;
+    }
 
-        schema.getID().setValue(instance, row.getUUID(schema.getID().getName()));
+    /** Values of the columns covered by an index, (those not null). */
+    private Map<String, Object> getCoveredValues(Schema schema, ColumnSpec colSpec, Object obj) {
+        Map<String, Object> values = Maps.newHashMap();
 
-        for (ColumnSpec colSpec : schema.getColumns()) {
-            setColumn(instance, colSpec, row);
+        for (ColumnSpec covered : schema.getCoveredColumns(colSpec)) {
+            Object value = covered.getValue(obj);
+            if (value != null) values.put(covered.getName(), value);
         }
-        
-        for (OneToManySpec relSpec : schema.getOneToManys()) {
-            Schema s = relSpec.getSchema();
-            Collection<Object> relations = Lists.newArrayList();
-            String joinTable = joinTableName(schema.getTableName(), s.getTableName());
-            Statement statement = select().from(joinTable).where(eq(joinColumnName(schema.getTableName()), id));
-            statement.setConsistencyLevel(getDriverConsistencyLevel(consistency));
 
-            for (Row r : executeStatement(statement, consistency)) {
-                UUID u = r.getUUID(joinColumnName(s.getTableName()));
+        return values;
+    }
+
+    /** Values of the columns covered by an index, (those not null). */
+    Map<String, Object> getCoveredValues(Schema schema, ColumnSpec colSpec, Map<String, Object> columns) {
+        Map<String, Object> values = Maps.newHashMap();
+
+        for (ColumnSpec covered : schema.getCoveredColumns(colSpec)) {
+            Object value = columns.get(covered.getName());
+            if (value != null) values.put(covered.getName(), value);
+        }
+
+        return values;
+    }
+
+    /** Index row insert, (absent if the value is null, and cannot be indexed). */
+    Optional<Insert> insertIndexRow(Schema schema, ColumnSpec colSpec, Object value, UUID id, Map<String, Object> covered) {
+
+        if (value == null) {
+            return Optional.absent();
+        }
+
+        Insert insert = m_tables.insertInto(indexTableName(schema.getTableName(), colSpec.getName()))
+                .value(colSpec.getName(), value)
+                .value(joinColumnName(schema.getTableName()), id);
+
+        for (Entry<String, Object> entry : covered.entrySet()) {
+            insert.value(entry.getKey(), entry.getValue());
+        }
+
+        if (colSpec.getIndexType().equals(IndexType.ORDERED)) {
+            insert.value(BUCKET_COLUMN, bucketOf(id, colSpec.getIndexBuckets()));
+            if (colSpec.isIndexPeriodic()) insert.value(PERIOD_COLUMN, periodOf(value, colSpec.getIndexPeriod()));
+        }
+        else if (colSpec.isIndexSharded()) {
+            insert.value(SHARD_COLUMN, bucketOf(id, colSpec.getIndexShards()));
+        }
+
+        return Optional.of(insert);
+    }
+
+    /** Selects the index row for a value, (and entity). */
+    Select.Where selectIndexRow(Schema schema, ColumnSpec colSpec, Object value, UUID id) {
+
+        String idName = joinColumnName(schema.getTableName());
+        Select.Where select = m_tables.from(select(idName), indexTableName(schema.getTableName(), colSpec.getName()))
+                .where(eq(colSpec.getName(), value))
+                .and(eq(idName, id));
+
+        if (colSpec.getIndexType().equals(IndexType.ORDERED)) {
+            select.and(eq(BUCKET_COLUMN, bucketOf(id, colSpec.getIndexBuckets())));
+            if (colSpec.isIndexPeriodic()) select.and(eq(PERIOD_COLUMN, periodOf(value, colSpec.getIndexPeriod())));
+        }
+        else if (colSpec.isIndexSharded()) {
+            select.and(eq(SHARD_COLUMN, bucketOf(id, colSpec.getIndexShards())));
+        }
+
+        return select;
+    }
+
+    /** Index row delete, (absent if the value is null, and was never indexed). */
+    private Optional<Delete.Where> deleteIndexRow(Schema schema, ColumnSpec colSpec, Object value, UUID id) {
+
+        if (value == null) {
+            return Optional.absent();
+        }
+
+        Delete.Where delete = m_tables.from(QueryBuilder.delete(), indexTableName(schema.getTableName(), colSpec.getName()))
+                .where(eq(colSpec.getName(), value))
+                .and(eq(joinColumnName(schema.getTableName()), id));
+
+        if (colSpec.getIndexType().equals(IndexType.ORDERED)) {
+            delete.and(eq(BUCKET_COLUMN, bucketOf(id, colSpec.getIndexBuckets())));
+            if (colSpec.isIndexPeriodic()) delete.and(eq(PERIOD_COLUMN, periodOf(value, colSpec.getIndexPeriod())));
+        }
+        else if (colSpec.isIndexSharded()) {
+            delete.and(eq(SHARD_COLUMN, bucketOf(id, colSpec.getIndexShards())));
+        }
+
+        return Optional.of(delete);
+    }
+
+    /** Adds an adjustment of an index's count of a value, (if the index is counted, and the value not null). */
+    private void addIndexCount(List<RegularStatement> counts, Schema schema, ColumnSpec colSpec, Object value, long delta) {
+
+        if (!colSpec.isIndexCounted() || value == null) {
+            return;
+        }
+
+        counts.add(m_tables.update(indexCountTableName(schema.getTableName(), colSpec.getName()))
+                .with((delta < 0) ? decr(COUNT_COLUMN, -delta) : incr(COUNT_COLUMN, delta))
+                .where(eq(colSpec.getName(), value)));
+    }
+
+    /**
+     * Adds the increment of an entity's counters by the difference between their current and past
+     * values, (a past record of null being all zeros).
+     */
+    private void addCounters(List<RegularStatement> counters, Schema schema, UUID id, Record current, Record past) {
+
+        Update update = m_tables.update(counterTableName(schema.getTableName()));
+        boolean changed = false;
+
+        for (ColumnSpec colSpec : schema.getCounters()) {
+            Long value = (Long) current.getColumns().get(colSpec.getName());
+            Long pastValue = (past != null) ? (Long) past.getColumns().get(colSpec.getName()) : null;
+
+            // Null values are never written.
+            if (value == null) {
+                continue;
+            }
+
+            long delta = value - ((pastValue != null) ? pastValue : 0);
+
+            if (delta != 0) {
+                update.with((delta < 0) ? decr(colSpec.getName(), -delta) : incr(colSpec.getName(), delta));
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            counters.add(update.where(eq(schema.getID().getName(), id)));
+        }
+    }
+
+    private List<Object> getValues(CompositeIndexSpec indexSpec, Object obj) {
+        List<Object> values = Lists.newArrayList();
+        for (ColumnSpec colSpec : indexSpec.getColumns()) {
+            values.add(colSpec.getValue(obj));
+        }
+        return values;
+    }
+
+    private List<Object> getValues(CompositeIndexSpec indexSpec, Map<String, Object> columns) {
+        List<Object> values = Lists.newArrayList();
+        for (ColumnSpec colSpec : indexSpec.getColumns()) {
+            values.add(columns.get(colSpec.getName()));
+        }
+        return values;
+    }
+
+    /** Composite index row insert, (absent if any of the values are null, and cannot be indexed). */
+    Optional<Insert> insertIndexRow(Schema schema, CompositeIndexSpec indexSpec, List<Object> values, UUID id) {
+
+        if (values.contains(null)) {
+            return Optional.absent();
+        }
+
+        Insert insert = m_tables.insertInto(indexSpec.getTableName()).value(joinColumnName(schema.getTableName()), id);
+
+        for (int i = 0; i < values.size(); i++) {
+            insert.value(indexSpec.getColumns().get(i).getName(), values.get(i));
+        }
+
+        return Optional.of(insert);
+    }
+
+    /** Composite index row delete, (absent if any of the values are null, and were never indexed). */
+    private Optional<Delete.Where> deleteIndexRow(Schema schema, CompositeIndexSpec indexSpec, List<Object> values, UUID id) {
+
+        if (values.contains(null)) {
+            return Optional.absent();
+        }
+
+        Delete.Where delete = m_tables.from(QueryBuilder.delete(), indexSpec.getTableName())
+                .where(eq(joinColumnName(schema.getTableName()), id));
+
+        for (int i = 0; i < values.size(); i++) {
+            delete.and(eq(indexSpec.getColumns().get(i).getName(), values.get(i)));
+        }
+
+        return Optional.of(delete);
+    }
+
+    private Collection<RegularStatement> diffCollection(String table, String column, Clause whereClause, Object past, Object present) {
+        if (past instanceof Set<?>) {
+            return diffSet(table, column, whereClause, (Set<?>) past, (Set<?>) present);
+        }
+        else if (past instanceof Map<?, ?>) {
+            return diffMap(table, column, whereClause, (Map<?, ?>) past, (Map<?, ?>) present);
+        }
+        else if (present instanceof List<?>) {
+            return diffList(table, column, whereClause, (past != null) ? (List<?>) past : Collections.emptyList(), (List<?>) present);
+        }
+        else {
+            throw new RuntimeException("unknown collection type!");
+        }
+    }
+
+    /**
+     * Lists are updated with an append, a prepend, or by setting elements by index, where the change
+     * is one of these; Anything else rewrites the whole list.
+     */
+    private Collection<RegularStatement> diffList(String table, String column, Clause whereClause, List<?> past,
+            List<?> present) {
+
+        List<RegularStatement> queries = Lists.newArrayList();
+        int added = present.size() - past.size();
+
+        if (added > 0 && present.subList(0, past.size()).equals(past)) {
+            queries.add(m_tables.update(table).with(appendAll(column, present.subList(past.size(), present.size()))).where(whereClause));
+        }
+        else if (added > 0 && present.subList(added, present.size()).equals(past)) {
+            queries.add(m_tables.update(table).with(prependAll(column, present.subList(0, added))).where(whereClause));
+        }
+        else if (added == 0) {
+            Update update = m_tables.update(table);
+
+            for (int i = 0; i < present.size(); i++) {
+                if (!present.get(i).equals(past.get(i))) {
+                    update.with(setIdx(column, i, present.get(i)));
+                }
+            }
+
+            queries.add(update.where(whereClause));
+        }
+        else {
+            queries.add(m_tables.update(table).with(set(column, present)).where(whereClause));
+        }
+
+        return queries;
+    }
+
+    /**
+     * Adds the statements that write the changes recorded by a collection column; A collection that
+     * was replaced (or overwritten), or that is updated whole, is written whole, (as is any
+     * collection, if <code>whole</code> is true). Returns false if the statements can't safely be
+     * sent more than once, (a list appended, prepended, or written whole).
+     * <p>
+     * The recorded changes are drained from the collection as the statements are built, (changes
+     * made meanwhile are left for the next update), and the collection added to <code>drained</code>.
+     */
+    private boolean addRecordedChanges(Schema schema, ColumnSpec colSpec, Object object, List<RegularStatement> batch, boolean whole, List<Tracked> drained) {
+
+        Object value = colSpec.getValue(object);
+
+        // Null values are never written.
+        if (value == null || (!whole && value instanceof Tracked && !((Tracked) value).isChanged())) {
+            return true;
+        }
+
+        whole |= colSpec.getCollectionUpdateStrategy().equals(UpdateStrategy.COLLECTION);
+
+        if (value instanceof Tracked) {
+            drained.add((Tracked) value);
+            value = ((Tracked) value).drain(whole);
+        }
+
+        String table = schema.getTableName();
+        String column = colSpec.getName();
+        Object id = schema.getID().getValue(object);
+        Clause whereClause = eq(schema.getID().getName(), id);
+
+        if (whole || !(value instanceof Tracked) || ((Tracked) value).isOverwritten()) {
+            batch.add(m_tables.insertInto(table).value(column, value).value(schema.getID().getName(), id));
+            return isResendable(value);
+        }
+        else if (value instanceof TrackedSet) {
+            TrackedSet<?> set = (TrackedSet<?>) value;
+
+            if (!set.getRemoved().isEmpty()) {
+                batch.add(m_tables.update(table).with(removeAll(column, Sets.newHashSet(set.getRemoved()))).where(whereClause));
+            }
+
+            if (!set.getAdded().isEmpty()) {
+                batch.add(m_tables.update(table).with(addAll(column, Sets.newHashSet(set.getAdded()))).where(whereClause));
+            }
+        }
+        else if (value instanceof TrackedMap) {
+            TrackedMap<?, ?> map = (TrackedMap<?, ?>) value;
+
+            if (!map.getRemoved().isEmpty()) {
+                Delete.Selection delete = QueryBuilder.delete();
+
+                for (Object key : map.getRemoved()) {
+                    delete.mapElt(column, key);
+                }
+
+                batch.add(m_tables.from(delete, table).where(whereClause));
+            }
+
+            if (!map.getPut().isEmpty()) {
+                Update update = m_tables.update(table);
+
+                for (Entry<?, ?> entry : map.getPut().entrySet()) {
+                    update.with(QueryBuilder.put(column, entry.getKey(), entry.getValue()));
+                }
+
+                batch.add(update.where(whereClause));
+            }
+        }
+        else {
+            TrackedList<?> list = (TrackedList<?>) value;
+
+            switch (list.getChange()) {
+                case APPEND:
+                    batch.add(m_tables.update(table).with(appendAll(column, Lists.newArrayList(list.getAdded()))).where(whereClause));
+                    return false;
+                case PREPEND:
+                    batch.add(m_tables.update(table).with(prependAll(column, Lists.newArrayList(list.getAdded()))).where(whereClause));
+                    return false;
+                case SET:
+                    Update update = m_tables.update(table);
+
+                    for (Entry<Integer, ?> entry : list.getSet().entrySet()) {
+                        update.with(setIdx(column, entry.getKey(), entry.getValue()));
+                    }
+
+                    batch.add(update.where(whereClause));
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected list change: " + list.getChange());
+            }
+        }
+
+        return true;
+    }
+
+    private Collection<RegularStatement> diffSet(String table, String column, Clause whereClause, Set<?> past,
+            Set<?> present) {
+
+        List<RegularStatement> queries = Lists.newArrayList();
+
+        Set<?> removes = Sets.newHashSet(past);
+        removes.removeAll(present);
+
+        if (!removes.isEmpty()) {
+            queries.add(m_tables.update(table).with(removeAll(column, removes)).where(whereClause));
+        }
+
+        Set<?> adds = Sets.newHashSet(present);
+        adds.removeAll(past);
+
+        if (!adds.isEmpty()) {
+            queries.add(m_tables.update(table).with(addAll(column, adds)).where(whereClause));
+        }
+
+        return queries;
+    }
+
+    private Collection<RegularStatement> diffMap(String table, String column, Clause whereClause, Map<?, ?> past,
+            Map<?, ?> present) {
+
+        List<RegularStatement> queries = Lists.newArrayList();
+
+        Set<?> removed = Sets.newHashSet(past.keySet());
+        removed.removeAll(present.keySet());
+
+        if (!removed.isEmpty()) {
+            Delete.Selection delete = QueryBuilder.delete();
+
+            for (Object o : removed) {
+                delete.mapElt(column, o);
+            }
+
+            queries.add(m_tables.from(delete, table).where(whereClause));
+        }
+
+        Set<Entry<?, ?>> changed = Sets.<Entry<?, ?>> newHashSet(present.entrySet());
+        changed.removeAll(past.entrySet());
+
+        if (!changed.isEmpty()) {
+            Update update = m_tables.update(table);
+
+            for (Entry<?, ?> entry : changed) {
+                update.with(QueryBuilder.put(column, entry.getKey(), entry.getValue()));
+            }
+
+            queries.add(update.where(whereClause));
+        }
+
+        return queries;
+    }
+
+    @Override
+    public <T> Optional<T> read(Class<T> cls, UUID id) {
+        checkNotNull(cls, "class argument");
+        return read(cls, id, m_consistency.getRead(cls), m_consistency.getIndexRead(cls));
+    }
+
+    @Override
+    public <T> Optional<T> read(Class<T> cls, UUID id, ConsistencyLevel consistency) {
+        return read(cls, id, consistency, consistency);
+    }
+
+    private <T> Optional<T> read(Class<T> cls, UUID id, ConsistencyLevel consistency, ConsistencyLevel joinConsistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(id, "id argument");
+        checkNotNull(consistency, "consistency argument");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        Schema schema = getSchema(cls);
+        Statement selectStatement = m_tables.from(select(), schema.getTableName()).where(eq(schema.getID().getName(), id));
+        ResultSet results = executeRead(schema, selectStatement, consistency);
+        Row row = results.one();
+
+        checkState(results.isExhausted(), "query returned more than one row");
+        if (row == null) return Optional.absent();
+
+        return Optional.of(newInstance(schema, cls, row, joinConsistency));
+    }
+
+    /**
+     * Creates (and tracks) an instance from an entity row, reading its relations; Related entities
+     * are read eagerly, (and recursively), whether or not the caller uses them.
+     */
+    private <T> T newInstance(Schema schema, Class<T> cls, Row row, ConsistencyLevel joinConsistency) {
+
+        T instance = Util.newInstance(cls);
+        UUID id = row.getUUID(schema.getID().getName());
+
+        schema.getID().setValue(instance, id);
+
+        for (ColumnSpec colSpec : schema.getColumns()) {
+            setColumn(instance, colSpec, row);
+
+            // Collections read are copied, (nothing else refers to them), and tracked.
+            Object value = colSpec.getValue(instance);
+
+            if (colSpec.isChangeRecorded() && value != null) {
+                colSpec.setValue(instance, TrackedCollections.trackCopy(value));
+            }
+        }
+
+        for (EmbeddedSpec embeddedSpec : schema.getEmbeddeds()) {
+            embeddedSpec.setValue(instance, embeddedSpec.decode(row.getSet(embeddedSpec.getName(), ByteBuffer.class)));
+        }
+
+        // Counters are stored in a table of their own, (at the cost of another read).
+        if (!schema.getCounters().isEmpty()) {
+            Statement select = m_tables.from(select(), counterTableName(schema.getTableName())).where(eq(schema.getID().getName(), id));
+            Row counters = executeRead(schema, select, joinConsistency).one();
+
+            for (ColumnSpec colSpec : schema.getCounters()) {
+                colSpec.setValue(instance, (counters != null) ? counters.getLong(colSpec.getName()) : 0L);
+            }
+        }
+        
+        for (OneToManySpec relSpec : schema.getOneToManys()) {
+            Iterator<UUID> ids;
+
+            // Stored on the entity row, or in a join table (at the cost of another read).
+            if (relSpec.isIdSet()) {
+                ids = row.getSet(relSpec.getColumnName(), UUID.class).iterator();
+            }
+            else {
+                ids = readJoinTable(schema, relSpec, id, joinConsistency);
+            }
+
+            relSpec.setValue(instance, readRelations(relSpec.getSchema(), ids));
+
+        }
+
+        track(schema, instance, snapshot(schema, instance));
+
+        return instance;
+    }
+
+    /**
+     * Streams the related IDs from a relation's join table; The partition is paged through, rather
+     * than read whole.
+     */
+    private Iterator<UUID> readJoinTable(Schema schema, OneToManySpec relSpec, UUID id, ConsistencyLevel consistency) {
+
+        final String idName = joinColumnName(relSpec.getSchema().getTableName());
+        String joinTable = joinTableName(schema.getTableName(), relSpec.getSchema().getTableName());
+        Statement statement = m_tables.from(select(idName), joinTable).where(eq(joinColumnName(schema.getTableName()), id));
+
+        statement.setFetchSize(RELATION_PAGE_SIZE);
+
+        final Iterator<Row> rows = executeRead(schema, statement, consistency).iterator();
+
+        return new AbstractIterator<UUID>() {
+
+            @Override
+            protected UUID computeNext() {
+                try {
+                    // Subsequent pages are fetched while iterating.
+                    return rows.hasNext() ? rows.next().getUUID(idName) : endOfData();
+                }
+                catch (DriverException driverExcp) {
+                    throw new LucidityException(driverExcp);
+                }
+            }
+        };
+    }
+
+    /** Reads related entities, a page of IDs at a time (each page concurrently). */
+    private Collection<Object> readRelations(Schema schema, Iterator<UUID> ids) {
+
+        Class<?> type = schema.getObjectType();
+        Collection<Object> relations = Lists.newArrayList();
+
+        while (ids.hasNext()) {
+            List<UUID> page = Lists.newArrayList(Iterators.limit(ids, RELATION_PAGE_SIZE));
+            List<Row> rows = readRows(schema, page, m_consistency.getRead(type));
+
+            for (int i = 0; i < page.size(); i++) {
+                Row row = rows.get(i);
+
+                if (row != null) {
+                    relations.add(newInstance(schema, type, row, m_consistency.getIndexRead(type)));
+                }
+                else {
+                    LOG.debug("Lookup for relation with ID {} failed, (skipping)", page.get(i));
+                }
+            }
+        }
+
+        return relations;
+    }
+
+    /** Reads entity rows by ID, concurrently; Rows are in order of the IDs, (null where missing). */
+    private List<Row> readRows(Schema schema, List<UUID> ids, ConsistencyLevel consistency) {
+
+        List<Statement> statements = Lists.newArrayList();
+
+        for (UUID id : ids) {
+            statements.add(m_tables.from(select(), schema.getTableName()).where(eq(schema.getID().getName(), id)));
+        }
+
+        List<Row> rows = Lists.newArrayList();
+
+        for (ResultSet results : executeReads(schema, statements, consistency)) {
+            rows.add(results.one());
+        }
+
+        return rows;
+    }
+
+    @Override
+    public Iterable<UUID> readRelationIDs(Class<?> cls, UUID id, String relationName) {
+        checkNotNull(cls, "class argument");
+        return readRelationIDs(cls, id, relationName, m_consistency.getIndexRead(cls));
+    }
+
+    @Override
+    public Iterable<UUID> readRelationIDs(Class<?> cls, final UUID id, String relationName, final ConsistencyLevel consistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(id, "id argument");
+        checkNotNull(relationName, "relationName argument");
+        checkNotNull(consistency, "consistency level argument");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        final Schema schema = getSchema(cls);
+        final OneToManySpec relSpec = schema.getOneToMany(relationName);
+
+        checkArgument(relSpec != null, format("no relation '%s'", relationName));
+
+        if (relSpec.isIdSet()) {
+            Statement selectStatement = m_tables.from(select(relSpec.getColumnName()), schema.getTableName())
+                    .where(eq(schema.getID().getName(), id));
+            Row row = executeRead(schema, selectStatement, consistency).one();
+
+            return (row != null) ? row.getSet(relSpec.getColumnName(), UUID.class) : Collections.<UUID> emptySet();
+        }
+
+        return new Iterable<UUID>() {
+
+            @Override
+            public Iterator<UUID> iterator() {
+                return readJoinTable(schema, relSpec, id, consistency);
+            }
+        };
+    }
+
+    @Override
+    public <T> Collection<T> read(Class<T> cls, String indexedName, Object value) {
+        checkNotNull(cls, "class argument");
+        return read(cls, indexedName, value, m_consistency.getIndexRead(cls), m_consistency.getRead(cls));
+    }
+
+    @Override
+    public <T> Collection<T> read(Class<T> cls, String indexedName, Object value, ConsistencyLevel consistency) {
+        return read(cls, indexedName, value, consistency, consistency);
+    }
+
+    private <T> Collection<T> read(Class<T> cls, String indexedName, Object value, ConsistencyLevel indexConsistency, ConsistencyLevel consistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(indexedName, "indexedName argument");
+        checkNotNull(value, "value argument");
+        checkNotNull(indexConsistency, "consistency level argument");
+        checkNotNull(consistency, "consistency level argument");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        Schema schema = getSchema(cls);
+
+        if (!schema.isIndexed(indexedName)) {
+            throw new UnsupportedOperationException(format("unindexed or non-existent column '%s'", indexedName));
+        }
+
+        List<T> results = Lists.newArrayList();
+
+        // Natively indexed; The entity rows are read directly.
+        if (schema.getColumn(indexedName).getIndexType().equals(IndexType.NATIVE)) {
+            Statement selectStatement = m_tables.from(select(), schema.getTableName()).where(eq(indexedName, value));
+
+            for (Row row : executeRead(schema, selectStatement, consistency)) {
+                results.add(newInstance(schema, cls, row, indexConsistency));
+            }
+
+            return results;
+        }
+
+        for (UUID id : readIndex(schema, schema.getColumn(indexedName), value, indexConsistency)) {
+            Optional<T> optional = read(cls, id, consistency, indexConsistency);
+            if (optional.isPresent()) results.add(optional.get());
+        }
+
+        return results;
+    }
+
+    /** Reads the IDs of the entities with an indexed value, from the column's index table. */
+    private List<UUID> readIndex(Schema schema, ColumnSpec colSpec, Object value, ConsistencyLevel consistency) {
+
+        String idName = joinColumnName(schema.getTableName());
+        List<UUID> ids = Lists.newArrayList();
+
+        for (Row row : readIndexRows(schema, colSpec, value, select(idName), consistency)) {
+            ids.add(row.getUUID(idName));
+        }
+
+        return ids;
+    }
+
+    /** Reads the rows of a column's index table that match a value. */
+    private List<Row> readIndexRows(Schema schema, ColumnSpec colSpec, Object value, Select.Builder select, ConsistencyLevel consistency) {
+
+        List<Row> rows = Lists.newArrayList();
+
+        for (ResultSet results : executeReads(schema, selectIndexRows(schema, colSpec, value, select), consistency)) {
+            rows.addAll(results.all());
+        }
+
+        return rows;
+    }
+
+    /** Selects the rows of a column's index table that match a value, (one statement per partition). */
+    private List<Statement> selectIndexRows(Schema schema, ColumnSpec colSpec, Object value, Select.Builder select) {
+
+        String tableName = indexTableName(schema.getTableName(), colSpec.getName());
+        List<Statement> statements = Lists.newArrayList();
+
+        if (colSpec.getIndexType().equals(IndexType.ORDERED)) {
+            for (int bucket = 0; bucket < colSpec.getIndexBuckets(); bucket++) {
+                Select.Where where = m_tables.from(select, tableName).where(eq(BUCKET_COLUMN, bucket));
+                if (colSpec.isIndexPeriodic()) where.and(eq(PERIOD_COLUMN, periodOf(value, colSpec.getIndexPeriod())));
+                statements.add(where.and(eq(colSpec.getName(), value)));
+            }
+        }
+        else if (colSpec.isIndexSharded()) {
+            for (int shard = 0; shard < colSpec.getIndexShards(); shard++) {
+                statements.add(m_tables.from(select, tableName).where(eq(colSpec.getName(), value)).and(eq(SHARD_COLUMN, shard)));
+            }
+        }
+        else {
+            statements.add(m_tables.from(select, tableName).where(eq(colSpec.getName(), value)));
+        }
+
+        return statements;
+    }
+
+    @Override
+    public long count(Class<?> cls, String indexedName, Object value) {
+        checkNotNull(cls, "class argument");
+        return count(cls, indexedName, value, m_consistency.getIndexRead(cls));
+    }
+
+    @Override
+    public long count(Class<?> cls, String indexedName, Object value, ConsistencyLevel consistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(indexedName, "indexedName argument");
+        checkNotNull(value, "value argument");
+        checkNotNull(consistency, "consistency level argument");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        Schema schema = getSchema(cls);
+
+        if (!schema.isIndexed(indexedName)) {
+            throw new UnsupportedOperationException(format("unindexed or non-existent column '%s'", indexedName));
+        }
+
+        ColumnSpec colSpec = schema.getColumn(indexedName);
+        List<Statement> statements;
+
+        // Only the ID column is read, a page at a time; The entities themselves never are.
+        if (colSpec.getIndexType().equals(IndexType.NATIVE)) {
+            statements = Collections.<Statement> singletonList(
+                    m_tables.from(select(schema.getID().getName()), schema.getTableName()).where(eq(indexedName, value)));
+        }
+        else {
+            statements = selectIndexRows(schema, colSpec, value, select(joinColumnName(schema.getTableName())));
+        }
+
+        for (Statement statement : statements) {
+            statement.setFetchSize(COUNT_FETCH_SIZE);
+        }
+
+        long count = 0;
+
+        try {
+            for (ResultSet results : executeReads(schema, statements, consistency)) {
+                for (Iterator<Row> rows = results.iterator(); rows.hasNext(); rows.next()) {
+                    count++;
+                }
+            }
+        }
+        catch (DriverException driverExcp) {
+            // Subsequent pages are fetched while iterating.
+            throw new LucidityException(driverExcp);
+        }
+
+        return count;
+    }
+
+    @Override
+    public long approximateCount(Class<?> cls, String indexedName, Object value) {
+        checkNotNull(cls, "class argument");
+        return approximateCount(cls, indexedName, value, m_consistency.getIndexRead(cls));
+    }
+
+    @Override
+    public long approximateCount(Class<?> cls, String indexedName, Object value, ConsistencyLevel consistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(indexedName, "indexedName argument");
+        checkNotNull(value, "value argument");
+        checkNotNull(consistency, "consistency level argument");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        Schema schema = getSchema(cls);
+        ColumnSpec colSpec = schema.getColumn(indexedName);
+
+        if (colSpec == null || !colSpec.isIndexCounted()) {
+            throw new UnsupportedOperationException(format("no counted index on column '%s'", indexedName));
+        }
+
+        Statement selectStatement = m_tables.from(select(COUNT_COLUMN), indexCountTableName(schema.getTableName(), indexedName))
+                .where(eq(indexedName, value));
+        Row row = executeRead(schema, selectStatement, consistency).one();
+
+        return (row != null) ? Math.max(row.getLong(COUNT_COLUMN), 0) : 0;
+    }
+
+    @Override
+    public <T> Collection<T> readParents(Class<T> cls, String relationName, UUID relationID) {
+        checkNotNull(cls, "class argument");
+        return readParents(cls, relationName, relationID, m_consistency.getIndexRead(cls), m_consistency.getRead(cls));
+    }
+
+    @Override
+    public <T> Collection<T> readParents(Class<T> cls, String relationName, UUID relationID, ConsistencyLevel consistency) {
+        return readParents(cls, relationName, relationID, consistency, consistency);
+    }
+
+    private <T> Collection<T> readParents(Class<T> cls, String relationName, UUID relationID, ConsistencyLevel joinConsistency, ConsistencyLevel consistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(relationName, "relationName argument");
+        checkNotNull(relationID, "relationID argument");
+        checkNotNull(joinConsistency, "consistency level argument");
+        checkNotNull(consistency, "consistency level argument");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        Schema schema = getSchema(cls);
+        OneToManySpec relSpec = schema.getOneToMany(relationName);
+
+        if (relSpec == null || !relSpec.isReversed()) {
+            throw new UnsupportedOperationException(format("no reversed relation '%s'", relationName));
+        }
+
+        String reverseTable = reverseJoinTableName(schema.getTableName(), relSpec.getSchema().getTableName());
+        Statement statement = m_tables.from(select(joinColumnName(schema.getTableName())), reverseTable)
+                .where(eq(joinColumnName(relSpec.getSchema().getTableName()), relationID));
+        List<T> results = Lists.newArrayList();
+
+        for (Row row : executeRead(schema, statement, joinConsistency)) {
+            Optional<T> optional = read(cls, row.getUUID(joinColumnName(schema.getTableName())), consistency, joinConsistency);
+            if (optional.isPresent()) results.add(optional.get());
+        }
+
+        return results;
+    }
+
+    @Override
+    public <T> Collection<T> readProjection(Class<T> cls, String indexedName, Object value) {
+        checkNotNull(cls, "class argument");
+        return readProjection(cls, indexedName, value, m_consistency.getIndexRead(cls));
+    }
+
+    @Override
+    public <T> Collection<T> readProjection(Class<T> cls, String indexedName, Object value, ConsistencyLevel consistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(indexedName, "indexedName argument");
+        checkNotNull(value, "value argument");
+        checkNotNull(consistency, "consistency level argument");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        Schema schema = getSchema(cls);
+        ColumnSpec colSpec = schema.getColumn(indexedName);
+
+        if (colSpec == null || !colSpec.hasIndexTable() || schema.getCoveredColumns(colSpec).isEmpty()) {
+            throw new UnsupportedOperationException(format("no covering index on column '%s'", indexedName));
+        }
+
+        List<T> results = Lists.newArrayList();
+
+        // Projections are partial, and so never tracked.
+        for (Row row : readIndexRows(schema, colSpec, value, select(), consistency)) {
+            T instance = Util.newInstance(cls);
+
+            schema.getID().setValue(instance, row.getUUID(joinColumnName(schema.getTableName())));
+            setColumn(instance, colSpec, row);
+
+            for (ColumnSpec covered : schema.getCoveredColumns(colSpec)) {
+                setColumn(instance, covered, row);
+            }
+
+            results.add(instance);
+        }
+
+        return results;
+    }
+
+    @Override
+    public <T> Page<T> readRange(Class<T> cls, String indexedName, Object start, Object end, int pageSize) {
+        checkNotNull(cls, "class argument");
+        return readRange(cls, indexedName, start, end, pageSize, m_consistency.getIndexRead(cls), m_consistency.getRead(cls));
+    }
+
+    @Override
+    public <T> Page<T> readRange(Class<T> cls, String indexedName, Object start, Object end, int pageSize, ConsistencyLevel consistency) {
+        return readRange(cls, indexedName, start, end, pageSize, consistency, consistency);
+    }
+
+    private <T> Page<T> readRange(Class<T> cls, String indexedName, Object start, Object end, int pageSize, ConsistencyLevel indexConsistency, ConsistencyLevel consistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(indexedName, "indexedName argument");
+        checkArgument(pageSize > 0, "page size must be positive");
+        checkNotNull(indexConsistency, "consistency level argument");
+        checkNotNull(consistency, "consistency level argument");
+
+        Schema schema = getSchema(cls);
+        ColumnSpec colSpec = schema.getColumn(indexedName);
+
+        if (colSpec == null || !colSpec.isIndexed() || !colSpec.getIndexType().equals(IndexType.ORDERED)) {
+            throw new UnsupportedOperationException(format("no %s index on column '%s'", IndexType.ORDERED, indexedName));
+        }
+
+        RangeCursor cursor;
+
+        if (colSpec.isIndexPeriodic()) {
+            checkArgument(start != null && end != null, format("range over periodic index on '%s' must be bounded", indexedName));
+
+            long period = colSpec.getIndexPeriod();
+            cursor = new RangeCursor(colSpec.getIndexBuckets(), start, end, periodOf(start, period), periodOf(end, period));
+        }
+        else {
+            cursor = new RangeCursor(colSpec.getIndexBuckets(), start, end);
+        }
+
+        return readPage(cls, schema, colSpec, cursor, pageSize, indexConsistency, consistency);
+    }
+
+    private <T> Page<T> readPage(final Class<T> cls, final Schema schema, final ColumnSpec colSpec, final RangeCursor cursor, final int pageSize, final ConsistencyLevel indexConsistency, final ConsistencyLevel consistency) {
+
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        // Periods are read in turn, (each across all of its buckets), until the page is full.
+        List<IndexEntry> consumed = Lists.newArrayList();
+
+        do {
+            consumed.addAll(readPeriod(schema, colSpec, cursor, pageSize - consumed.size(), indexConsistency));
+        } while (consumed.size() < pageSize && cursor.nextPeriod());
+
+        // The page's entities are read concurrently, (in index order).
+        List<UUID> ids = Lists.newArrayList();
+
+        for (IndexEntry entry : consumed) {
+            ids.add(entry.getId());
+        }
+
+        List<Row> rows = readRows(schema, ids, consistency);
+        List<T> page = Lists.newArrayList();
+
+        for (int i = 0; i < ids.size(); i++) {
+            Row row = rows.get(i);
 
-                Optional<?> joined = read(s.getObjectType(), u);
+            if (row != null) {
+                page.add(newInstance(schema, cls, row, indexConsistency));
+            }
+            else {
+                LOG.debug("Lookup for indexed entity with ID {} failed, (skipping)", ids.get(i));
+            }
+        }
 
-                if (joined.isPresent()) {
-                    relations.add(joined.get());
-                }
-                else {
-                    LOG.debug("Lookup for relation with ID {} failed, (skipping)", u);
+        Supplier<Page<T>> next = null;
+
+        if (!cursor.isExhausted()) {
+            next = new Supplier<Page<T>>() {
+
+                @Override
+                public Page<T> get() {
+                    return readPage(cls, schema, colSpec, cursor, pageSize, indexConsistency, consistency);
                 }
+            };
+        }
 
+        return new Page<T>(page, next);
+    }
+
+    /**
+     * Reads up to <code>pageSize</code> index entries from the buckets of the cursor's current
+     * period, advancing the cursor past them.
+     */
+    private List<IndexEntry> readPeriod(Schema schema, ColumnSpec colSpec, RangeCursor cursor, int pageSize, ConsistencyLevel indexConsistency) {
+
+        String tableName = indexTableName(schema.getTableName(), colSpec.getName());
+        String idName = joinColumnName(schema.getTableName());
+        List<Integer> buckets = Lists.newArrayList();
+        List<Statement> statements = Lists.newArrayList();
+
+        for (int bucket = 0; bucket < cursor.getBuckets(); bucket++) {
+
+            if (cursor.isExhausted(bucket)) {
+                continue;
             }
 
-            relSpec.setValue(instance, relations);
+            // Read enough to fill the page, past those entries at the start already consumed.
+            Select.Where select = m_tables.from(select(colSpec.getName(), idName), tableName).where(eq(BUCKET_COLUMN, bucket));
+
+            if (colSpec.isIndexPeriodic()) select.and(eq(PERIOD_COLUMN, cursor.getPeriod()));
+
+            if (cursor.getFrom(bucket) != null) select.and(gte(colSpec.getName(), cursor.getFrom(bucket)));
+            if (cursor.getEnd() != null) select.and(lte(colSpec.getName(), cursor.getEnd()));
 
+            buckets.add(bucket);
+            statements.add(select.limit(cursor.getSkip(bucket) + pageSize));
         }
 
-        cacheInstance(instance);
+        List<List<IndexEntry>> entries = Lists.newArrayList(Collections.<List<IndexEntry>> nCopies(cursor.getBuckets(), null));
+        boolean[] complete = new boolean[cursor.getBuckets()];
+        List<ResultSet> results = executeReads(schema, statements, indexConsistency);
 
-        return Optional.of(instance);
+        for (int i = 0; i < buckets.size(); i++) {
+            int bucket = buckets.get(i), read = 0, limit = cursor.getSkip(bucket) + pageSize;
+            List<IndexEntry> bucketEntries = Lists.newArrayList();
+
+            for (Row row : results.get(i)) {
+                if (read++ >= cursor.getSkip(bucket)) {
+                    bucketEntries.add(new IndexEntry(getOrderedValue(colSpec, row), row.getUUID(idName)));
+                }
+            }
+
+            entries.set(bucket, bucketEntries);
+            complete[bucket] = read < limit;
+        }
+
+        return cursor.advance(entries, complete, pageSize);
+    }
+
+    private Object getOrderedValue(ColumnSpec colSpec, Row row) {
+
+        Type type = colSpec.getType();
+
+        if (type.equals(Integer.TYPE) || type.equals(Integer.class)) {
+            return row.getInt(colSpec.getName());
+        }
+        else if (type.equals(Long.TYPE) || type.equals(Long.class)) {
+            return row.getLong(colSpec.getName());
+        }
+        else if (type.equals(Double.TYPE) || type.equals(Double.class)) {
+            return row.getDouble(colSpec.getName());
+        }
+        else if (type.equals(Date.class)) {
+            return row.getDate(colSpec.getName());
+        }
+        else {
+            throw new IllegalArgumentException(format("Unsupported ordered index type %s", type));
+        }
     }
 
     @Override
-    public <T> Collection<T> read(Class<T> cls, String indexedName, Object value) {
-        return read(cls, indexedName, value, m_consistency);
+    public <T> Collection<T> read(Class<T> cls, Map<String, ?> values) {
+        checkNotNull(cls, "class argument");
+        return read(cls, values, m_consistency.getIndexRead(cls), m_consistency.getRead(cls));
     }
 
     @Override
-    public <T> Collection<T> read(Class<T> cls, String indexedName, Object value, ConsistencyLevel consistency) {
+    public <T> Collection<T> read(Class<T> cls, Map<String, ?> values, ConsistencyLevel consistency) {
+        return read(cls, values, consistency, consistency);
+    }
+
+    private <T> Collection<T> read(Class<T> cls, Map<String, ?> values, ConsistencyLevel indexConsistency, ConsistencyLevel consistency) {
 
         checkNotNull(cls, "class argument");
-        checkNotNull(indexedName, "indexedName argument");
-        checkNotNull(value, "value argument");
+        checkNotNull(values, "values argument");
+        checkArgument(!values.isEmpty(), "values argument is empty");
+
+        // A single value is a lookup by (column) index.
+        if (values.size() == 1) {
+            Entry<String, ?> entry = values.entrySet().iterator().next();
+            return read(cls, entry.getKey(), entry.getValue(), indexConsistency, consistency);
+        }
+
+        checkNotNull(indexConsistency, "consistency level argument");
         checkNotNull(consistency, "consistency level argument");
-        checkState(m_isOpen, format("%s is closed", getClass().getSimpleName()));
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
 
-        T instance = Util.newInstance(cls);
+        Schema schema = getSchema(cls);
+        CompositeIndexSpec indexSpec = schema.getCompositeIndex(values.keySet());
+
+        if (indexSpec == null) {
+            throw new UnsupportedOperationException(format("no composite index on columns %s", values.keySet()));
+        }
 
-        Schema schema = getSchema(instance);
+        Select.Where selectStatement = m_tables.from(select(joinColumnName(schema.getTableName())), indexSpec.getTableName()).where();
 
-        if (!schema.isIndexed(indexedName)) {
-            throw new UnsupportedOperationException(format("unindexed or non-existent column '%s'", indexedName));
+        for (ColumnSpec colSpec : indexSpec.getColumns()) {
+            Object value = values.get(colSpec.getName());
+            checkNotNull(value, format("value of %s", colSpec.getName()));
+            selectStatement.and(eq(colSpec.getName(), value));
         }
 
-        Statement selectStatement = select(joinColumnName(schema.getTableName())).from(indexTableName(schema.getTableName(), indexedName)).where(eq(indexedName, value));
-        selectStatement.setConsistencyLevel(getDriverConsistencyLevel(consistency));
         List<T> results = Lists.newArrayList();
 
-        for (Row row : executeStatement(selectStatement, consistency)) {
-            Optional<T> optional = read(cls, row.getUUID(joinColumnName(schema.getTableName())), consistency);
+        for (Row row : executeRead(schema, selectStatement, indexConsistency)) {
+            Optional<T> optional = read(cls, row.getUUID(joinColumnName(schema.getTableName())), consistency, indexConsistency);
             if (optional.isPresent()) results.add(optional.get());
         }
 
         return results;
     }
 
-    private <T> void cacheInstance(T inst) {
-        Schema schema = getSchema(inst);
+    /**
+     * Tracks a created (or read) instance in the state recorded by a snapshot; The dirty fields of
+     * a {@link DirtyTracking} instance are cleared.
+     */
+    private void track(Schema schema, Object inst, Record snapshot) {
+
+        if (inst instanceof DirtyTracking) {
+            ((DirtyTracking) inst).drainDirtyFields();
+        }
+
+        attach(schema, inst, snapshot);
+    }
+
+    /**
+     * Tracks an instance in the state recorded by a snapshot, and installs change-recording
+     * collections in those of its fields without one, (copies of the collections already there).
+     */
+    private void attach(Schema schema, Object inst, Record snapshot) {
+
+        for (ColumnSpec colSpec : schema.getCollectionColumns()) {
+            Object value = colSpec.getValue(inst);
+
+            if (!colSpec.isChangeRecorded() || value == null) {
+                continue;
+            }
+
+            // Those installed already had their changes drained, as they were written.
+            if (!(value instanceof Tracked)) {
+                colSpec.setValue(inst, TrackedCollections.trackCopy(value));
+            }
+        }
+
+        m_instanceCache.put(inst, snapshot);
+    }
+
+    /** Checks that the dirty fields reported by an instance are those of its columns (or counters). */
+    static void checkDirtyFields(Schema schema, Set<String> dirty) {
+
+        Set<String> fieldNames = Sets.newHashSet();
+
+        for (ColumnSpec colSpec : Iterables.concat(schema.getColumns(), schema.getCounters())) {
+            fieldNames.add(colSpec.getFieldName());
+        }
+
+        for (String fieldName : dirty) {
+            checkArgument(
+                    fieldNames.contains(fieldName),
+                    format("%s reported dirty field %s, which is not a column", schema.getObjectType().getSimpleName(), fieldName));
+        }
+    }
+
+    /** Copies the persistent state of an instance into a new {@link Record}. */
+    private Record snapshot(Schema schema, Object inst) {
+        return snapshot(schema, inst, null, null);
+    }
+
+    /**
+     * Snapshots an instance; Where a set of dirty fields is given, the standard columns of any other
+     * fields are carried over from the past record, (they are unchanged).
+     */
+    private Record snapshot(Schema schema, Object inst, Record past, Set<String> dirty) {
         Record record = new Record(schema.getID().getValue(inst));
 
+        // Collections that record their own changes are not copied.
         for (ColumnSpec colSpec : schema.getColumns()) {
-            record.putColumn(colSpec.getName(), copyOf(colSpec.getValue(inst)));
+            if (colSpec.isChangeRecorded()) {
+                continue;
+            }
+
+            if (dirty != null && !colSpec.isCollection() && !dirty.contains(colSpec.getFieldName())) {
+                record.putColumn(colSpec.getName(), past.getColumns().get(colSpec.getName()));
+            }
+            else {
+                record.putColumn(colSpec.getName(), copyOf(colSpec.getValue(inst)));
+            }
+        }
+
+        for (ColumnSpec colSpec : schema.getCounters()) {
+            if (dirty != null && !dirty.contains(colSpec.getFieldName())) {
+                record.putColumn(colSpec.getName(), past.getColumns().get(colSpec.getName()));
+            }
+            else {
+                record.putColumn(colSpec.getName(), colSpec.getValue(inst));
+            }
+        }
+
+        // Embedded objects are recorded serialized; Their classes need not implement equals().
+        for (EmbeddedSpec embeddedSpec : schema.getEmbeddeds()) {
+            record.putColumn(embeddedSpec.getName(), embeddedSpec.encode(embeddedSpec.getValue(inst)));
         }
 
         for (OneToManySpec relSpec : schema.getOneToManys()) {
             Collection<?> relations = relSpec.getValue(inst);
-            record.putOneToMany(relSpec.getName(), (relations != null) ? Lists.newArrayList(relations) : null);
+            record.putOneToMany(relSpec.getName(), (relations != null) ? getRelationIDs(relSpec.getSchema(), relations) : null);
         }
 
-        m_instanceCache.put(getInstanceID(inst), record);
-
+        return record;
     }
 
     private Object copyOf(Object obj) {
@@ -520,49 +2056,54 @@ public class CassandraEntityStore implements EntityStore {
     }
 
     private void setColumn(Object obj, ColumnSpec colSpec, Row data) {
+        colSpec.setValue(obj, getColumnValue(colSpec, data));
+    }
+
+    /** Returns the value of a column from a row, (as the type of the column's field). */
+    Object getColumnValue(ColumnSpec colSpec, Row data) {
 
         if (colSpec.getType().equals(Boolean.TYPE)) {
-            colSpec.setValue(obj, data.getBool(colSpec.getName()));
+            return data.getBool(colSpec.getName());
         }
         else if (colSpec.getType().equals(BigDecimal.class)) {
-            colSpec.setValue(obj, data.getDecimal(colSpec.getName()));
+            return data.getDecimal(colSpec.getName());
         }
         else if (colSpec.getType().equals(BigInteger.class)) {
-            colSpec.setValue(obj, data.getVarint(colSpec.getName()));
+            return data.getVarint(colSpec.getName());
         }
         else if (colSpec.getType().equals(Date.class)) {
-            colSpec.setValue(obj, data.getDate(colSpec.getName()));
+            return data.getDate(colSpec.getName());
         }
         else if (colSpec.getType().equals(Double.TYPE)) {
-            colSpec.setValue(obj, data.getDouble(colSpec.getName()));
+            return data.getDouble(colSpec.getName());
         }
         else if (colSpec.getType().equals(Float.TYPE)) {
-            colSpec.setValue(obj, data.getFloat(colSpec.getName()));
+            return data.getFloat(colSpec.getName());
         }
         else if (colSpec.getType().equals(InetAddress.class)) {
-            colSpec.setValue(obj, data.getInet(colSpec.getName()));
+            return data.getInet(colSpec.getName());
         }
         else if (colSpec.getType().equals(Integer.TYPE)) {
-            colSpec.setValue(obj, data.getInt(colSpec.getName()));
+            return data.getInt(colSpec.getName());
         }
         else if (colSpec.getType().equals(List.class)) {
-            colSpec.setValue(obj, data.getList(colSpec.getName(), (Class<?>) colSpec.getParameterizedTypes()[0]));
+            return data.getList(colSpec.getName(), (Class<?>) colSpec.getParameterizedTypes()[0]);
         }
         else if (colSpec.getType().equals(Long.TYPE)) {
-            colSpec.setValue(obj, data.getLong(colSpec.getName()));
+            return data.getLong(colSpec.getName());
         }
         else if (colSpec.getType().equals(Map.class)) {
             Type[] types = colSpec.getParameterizedTypes();
-            colSpec.setValue(obj, data.getMap(colSpec.getName(), (Class<?>) types[0], (Class<?>) types[1]));
+            return data.getMap(colSpec.getName(), (Class<?>) types[0], (Class<?>) types[1]);
         }
         else if (colSpec.getType().equals(Set.class)) {
-            colSpec.setValue(obj, data.getSet(colSpec.getName(), (Class<?>) colSpec.getParameterizedTypes()[0]));
+            return data.getSet(colSpec.getName(), (Class<?>) colSpec.getParameterizedTypes()[0]);
         }
         else if (colSpec.getType().equals(String.class)) {
-            colSpec.setValue(obj, data.getString(colSpec.getName()));
+            return data.getString(colSpec.getName());
         }
         else if (colSpec.getType().equals(UUID.class)) {
-            colSpec.setValue(obj, data.getUUID(colSpec.getName()));
+            return data.getUUID(colSpec.getName());
         }
         else {
             throw new IllegalArgumentException(format("Unsupported field type %s", colSpec.getType()));
@@ -570,9 +2111,41 @@ public class CassandraEntityStore implements EntityStore {
 
     }
 
+    @Override
+    public void increment(Class<?> cls, UUID id, String counterName, long delta) {
+        checkNotNull(cls, "class argument");
+        increment(cls, id, counterName, delta, m_consistency.getWrite(cls));
+    }
+
+    @Override
+    public void increment(Class<?> cls, UUID id, String counterName, long delta, ConsistencyLevel consistency) {
+
+        checkNotNull(cls, "class argument");
+        checkNotNull(id, "id argument");
+        checkNotNull(counterName, "counterName argument");
+        checkNotNull(consistency, "consistency level argument");
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        Schema schema = getSchema(cls);
+
+        checkArgument(schema.getCounter(counterName) != null, format("no counter column '%s'", counterName));
+
+        if (delta == 0) {
+            return;
+        }
+
+        executeStatement(
+                schema,
+                m_tables.update(counterTableName(schema.getTableName()))
+                    .with((delta < 0) ? decr(counterName, -delta) : incr(counterName, delta))
+                    .where(eq(schema.getID().getName(), id)),
+                consistency);
+    }
+
     @Override
     public <T> void delete(T obj) {
-        delete(obj, m_consistency);
+        checkNotNull(obj, "object argument");
+        delete(obj, m_consistency.getWrite(obj.getClass()));
     }
 
     @Override
@@ -580,44 +2153,182 @@ public class CassandraEntityStore implements EntityStore {
 
         checkNotNull(obj, "object argument");
         checkNotNull(consistency, "consistency level argument");
-        checkState(m_isOpen, format("%s is closed", getClass().getSimpleName()));
+        checkState(m_isOpen.get(), format("%s is closed", getClass().getSimpleName()));
+
+        Lock lock = getInstanceLock(obj);
+        lock.lock();
+
+        try {
+            doDelete(obj, consistency);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> void doDelete(T obj, ConsistencyLevel consistency) {
 
         Schema schema = getSchema(obj);
-        Batch batchStatement = batch(QueryBuilder.delete().from(schema.getTableName())
-                .where(eq(schema.getID().getName(), schema.getID().getValue(obj))));
+        List<RegularStatement> statements = Lists.newArrayList();
+        List<RegularStatement> relationStatements = Lists.newArrayList();
+        List<RegularStatement> counts = Lists.newArrayList();
+        List<Statement> cascades = Lists.newArrayList();
+        long timestamp = TIMESTAMPS.next();
+
+        addDelete(schema, obj, timestamp, statements, relationStatements, counts, cascades);
+
+        // Owned entities are deleted first, (concurrently); Should the rest fail, the owner still
+        // refers to them, and the delete can be retried.
+        executeAll(schema, cascades, consistency);
+
+        Batch batchStatement = stamp(batch(statements.toArray(new RegularStatement[statements.size()])), timestamp);
+        List<Batch> relationBatches = batchRelations(batchStatement, relationStatements, timestamp);
+
+        executeWrite(schema, batchStatement, consistency, true);
+        executeBatches(schema, relationBatches, consistency);
+        executeCounts(schema, counts, consistency);
+
+        // Counters can't be batched with the rest; A row left behind is unreferenced, (IDs are never reused).
+        Optional<Delete.Where> counters = deleteCounterRow(schema, schema.getID().getValue(obj));
+
+        if (counters.isPresent()) {
+            try {
+                executeStatement(schema, counters.get(), consistency);
+            }
+            catch (LucidityException e) {
+                LOG.warn("Failed to delete counters of {} (ID {})", schema.getTableName(), schema.getID().getValue(obj), e);
+            }
+        }
+
+        m_instanceCache.remove(obj);
+
+        for (OneToManySpec relSpec : schema.getOneToManys()) {
+            if (relSpec.cascades(CascadeType.DELETE) && relSpec.getValue(obj) != null) {
+                for (Object item : relSpec.getValue(obj)) {
+                    m_instanceCache.remove(item);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Adds the statements that delete an entity; The base row first, then its index and relation
+     * rows. Entities owned by it (where relations cascade deletion) are read, and the batches that
+     * delete them added to <code>cascades</code>.
+     */
+    private void addDelete(Schema schema, Object obj, long timestamp, List<RegularStatement> statements, List<RegularStatement> relationStatements, List<RegularStatement> counts, List<Statement> cascades) {
+
+        UUID id = schema.getID().getValue(obj);
+
+        statements.add(m_tables.from(QueryBuilder.delete(), schema.getTableName()).where(eq(schema.getID().getName(), id)));
 
         // Remove index entries
         for (ColumnSpec colSpec : schema.getColumns()) {
-            if (colSpec.isIndexed()) {
-                String tableName = indexTableName(schema.getTableName(), colSpec.getName());
-                Clause columnClause = eq(colSpec.getName(), colSpec.getValue(obj));
-                Clause idClause = eq(joinColumnName(schema.getTableName()), schema.getID().getValue(obj));
-
-                batchStatement.add(QueryBuilder.delete().from(tableName).where(columnClause).and(idClause));
+            if (colSpec.hasIndexTable()) {
+                for (Object value : colSpec.getIndexedValues(colSpec.getValue(obj))) {
+                    Optional<Delete.Where> delete = deleteIndexRow(schema, colSpec, value, id);
+                    if (delete.isPresent()) statements.add(delete.get());
+                    addIndexCount(counts, schema, colSpec, value, -1);
+                }
             }
         }
 
+        for (CompositeIndexSpec indexSpec : schema.getCompositeIndexes()) {
+            Optional<Delete.Where> delete = deleteIndexRow(schema, indexSpec, getValues(indexSpec, obj), id);
+            if (delete.isPresent()) statements.add(delete.get());
+        }
+
         // Remove one-to-many relationships
         for (OneToManySpec relSpec : schema.getOneToManys()) {
+            if (relSpec.isReversed() || relSpec.cascades(CascadeType.DELETE)) {
+                // As stored; The object's relations may have changed since, or never been read.
+                List<UUID> relationIDs = Lists.newArrayList(readRelationIDs(
+                        schema.getObjectType(),
+                        id,
+                        relSpec.getName(),
+                        m_consistency.getIndexRead(schema.getObjectType())));
+
+                if (relSpec.isReversed()) {
+                    for (UUID relationID : relationIDs) {
+                        relationStatements.add(deleteReverseRow(schema, relSpec, id, relationID));
+                    }
+                }
+
+                if (relSpec.cascades(CascadeType.DELETE)) {
+                    addCascadedDeletes(relSpec.getSchema(), relationIDs, timestamp, counts, cascades);
+                }
+            }
+
+            if (relSpec.isIdSet()) {
+                continue;
+            }
+
             String joinTable = joinTableName(schema.getTableName(), relSpec.getSchema().getTableName());
-            batchStatement.add(
-                    QueryBuilder.delete().from(joinTable)
-                        .where(eq(joinColumnName(schema.getTableName()), schema.getID().getValue(obj)))
+            statements.add(
+                    m_tables.from(QueryBuilder.delete(), joinTable)
+                        .where(eq(joinColumnName(schema.getTableName()), id))
             );
         }
+    }
+
+    /** Counter row delete, (absent if the entity has no counters). */
+    private Optional<Delete.Where> deleteCounterRow(Schema schema, UUID id) {
+
+        if (schema.getCounters().isEmpty()) {
+            return Optional.absent();
+        }
+
+        return Optional.of(m_tables.from(QueryBuilder.delete(), counterTableName(schema.getTableName())).where(eq(schema.getID().getName(), id)));
+    }
+
+    /**
+     * Adds batches that delete owned entities, one per entity. Entities are read (a page of IDs at a
+     * time) for their indexed values, but are not tracked, and relations are not read.
+     */
+    private void addCascadedDeletes(Schema schema, List<UUID> ids, long timestamp, List<RegularStatement> counts, List<Statement> cascades) {
+
+        Class<?> type = schema.getObjectType();
+
+        for (List<UUID> page : Lists.partition(ids, RELATION_PAGE_SIZE)) {
+            for (Row row : readRows(schema, page, m_consistency.getRead(type))) {
 
-        executeStatement(batchStatement, consistency);
+                if (row == null) {
+                    continue;
+                }
+
+                Object item = Util.newInstance(type);
+                schema.getID().setValue(item, row.getUUID(schema.getID().getName()));
+
+                for (ColumnSpec colSpec : schema.getColumns()) {
+                    setColumn(item, colSpec, row);
+                }
 
-        m_instanceCache.remove(getInstanceID(obj));
+                List<RegularStatement> statements = Lists.newArrayList();
+                List<RegularStatement> relationStatements = Lists.newArrayList();
 
+                addDelete(schema, item, timestamp, statements, relationStatements, counts, cascades);
+
+                Batch batch = stamp(batch(statements.toArray(new RegularStatement[statements.size()])), timestamp);
+                cascades.addAll(batchRelations(batch, relationStatements, timestamp));
+                cascades.add(batch);
+
+                Optional<Delete.Where> counters = deleteCounterRow(schema, schema.getID().getValue(item));
+                if (counters.isPresent()) cascades.add(counters.get());
+            }
+        }
     }
 
     @Override
     public void close() throws IOException {
-        m_isOpen = false;
+        if (m_isOpen.compareAndSet(true, false)) {
+            m_instanceCache.clear();
+        }
     }
 
-    private ResultSet executeStatement(Statement statement, ConsistencyLevel cl) {
+    ResultSet executeStatement(Schema schema, Statement statement, ConsistencyLevel cl) {
+        Permit permit = m_limiter.acquire(schema.getObjectType());
+
         try {
             statement.setConsistencyLevel(getDriverConsistencyLevel(cl));
             return m_session.execute(statement);
@@ -625,6 +2336,220 @@ public class CassandraEntityStore implements EntityStore {
         catch (DriverException driverExcp) {
             throw new LucidityException(driverExcp);
         }
+        finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Adds relation statements to an entity's batch, unless there are more than fit in one; Those
+     * are instead split into bounded batches, (returned), to be written after the entity's.
+     */
+    private List<Batch> batchRelations(Batch batch, List<RegularStatement> relationStatements, long timestamp) {
+
+        if (relationStatements.size() <= RELATION_BATCH_SIZE) {
+            for (RegularStatement statement : relationStatements) {
+                batch.add(statement);
+            }
+            return Collections.emptyList();
+        }
+
+        List<Batch> batches = Lists.newArrayList();
+
+        for (List<RegularStatement> statements : Lists.partition(relationStatements, RELATION_BATCH_SIZE)) {
+            batches.add(stamp(batch(statements.toArray(new RegularStatement[statements.size()])), timestamp));
+        }
+
+        return batches;
+    }
+
+    /** Applies the (client-side) timestamp of the write a batch belongs to. */
+    private static Batch stamp(Batch batch, long timestamp) {
+        batch.using(timestamp(timestamp));
+        return batch;
+    }
+
+    private void executeBatches(Schema schema, List<Batch> batches, ConsistencyLevel cl) {
+        for (Batch batch : batches) {
+            executeWrite(schema, batch, cl, true);
+        }
+    }
+
+    /**
+     * Executes a (client-side timestamped) write, retrying it on timeout according to the write
+     * retry policy, if one is set, and if the write is idempotent.
+     */
+    private ResultSet executeWrite(Schema schema, final Statement statement, ConsistencyLevel cl, boolean idempotent) {
+
+        if (m_writeRetries == null || !idempotent) {
+            return executeStatement(schema, statement, cl);
+        }
+
+        final Class<?> type = schema.getObjectType();
+        statement.setConsistencyLevel(getDriverConsistencyLevel(cl));
+
+        try {
+            return m_writeRetries.execute(new WriteRetryPolicy.Attempt<ResultSet>() {
+
+                @Override
+                public ResultSet execute() {
+
+                    Permit permit = m_limiter.acquire(type);
+
+                    try {
+                        return m_session.execute(statement);
+                    }
+                    finally {
+                        permit.release();
+                    }
+                }
+            });
+        }
+        catch (DriverException driverExcp) {
+            throw new LucidityException(driverExcp);
+        }
+    }
+
+    /**
+     * Applies counter column increments, (as a single counter batch). Unlike index counts, these are
+     * entity state, and a failure fails the write. Increments aren't idempotent, so they are never
+     * retried, and an update records its new state before applying them; They are applied at most
+     * once, (a failed update can't be retried to apply them, but can't apply them twice either).
+     */
+    private void executeCounters(Schema schema, List<RegularStatement> counters, ConsistencyLevel cl) {
+        if (!counters.isEmpty()) {
+            executeStatement(schema, batch(counters.toArray(new RegularStatement[counters.size()])), cl);
+        }
+    }
+
+    /**
+     * Applies index count adjustments, (as a single counter batch). Counters can't be batched with
+     * the rest of a write, and aren't idempotent, so this follows it and is never retried; A failure
+     * here leaves the approximate counts off, but doesn't fail the write that has already succeeded.
+     */
+    private void executeCounts(Schema schema, List<RegularStatement> counts, ConsistencyLevel cl) {
+
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        try {
+            executeStatement(schema, batch(counts.toArray(new RegularStatement[counts.size()])), cl);
+        }
+        catch (LucidityException e) {
+            LOG.warn("Failed to update index counts of {}, (counts may drift)", schema.getTableName(), e);
+        }
+    }
+
+    /**
+     * Executes an (idempotent) read, hedging it according to the speculative read policy, if one is
+     * set.
+     */
+    private ResultSet executeRead(Schema schema, final Statement statement, ConsistencyLevel cl) {
+
+        if (m_speculativeReads == null) {
+            return executeStatement(schema, statement, cl);
+        }
+
+        final Class<?> type = schema.getObjectType();
+        statement.setConsistencyLevel(getDriverConsistencyLevel(cl));
+
+        try {
+            return m_speculativeReads.execute(new Attempt<ResultSet>() {
+
+                @Override
+                public ListenableFuture<ResultSet> start(boolean speculative) {
+
+                    // Never wait (or fail) for admission of a hedge, just go without.
+                    Permit permit = speculative ? m_limiter.tryAcquire(type) : m_limiter.acquire(type);
+
+                    if (permit == null) {
+                        return null;
+                    }
+
+                    return executeAsync(permit, statement);
+                }
+            });
+        }
+        catch (DriverException driverExcp) {
+            throw new LucidityException(driverExcp);
+        }
+    }
+
+    /**
+     * Executes independent (idempotent) reads concurrently, returning their results in the order
+     * of the statements.
+     */
+    private List<ResultSet> executeReads(Schema schema, List<Statement> statements, ConsistencyLevel cl) {
+
+        if (statements.size() == 1) {
+            return Collections.singletonList(executeRead(schema, statements.get(0), cl));
+        }
+
+        return executeAll(schema, statements, cl);
+    }
+
+    /**
+     * Executes independent (idempotent) statements concurrently, returning their results in the
+     * order of the statements. Statements are never hedged.
+     */
+    private List<ResultSet> executeAll(Schema schema, List<? extends Statement> statements, ConsistencyLevel cl) {
+
+        List<ResultSetFuture> futures = Lists.newArrayList();
+
+        try {
+            for (Statement statement : statements) {
+                statement.setConsistencyLevel(getDriverConsistencyLevel(cl));
+                futures.add(executeAsync(m_limiter.acquire(schema.getObjectType()), statement));
+            }
+
+            List<ResultSet> results = Lists.newArrayList();
+
+            for (ResultSetFuture future : futures) {
+                results.add(Uninterruptibles.getUninterruptibly(future));
+            }
+
+            return results;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof DriverException) {
+                throw new LucidityException(e.getCause());
+            }
+            throw Throwables.propagate(e.getCause());
+        }
+        catch (DriverException driverExcp) {
+            throw new LucidityException(driverExcp);
+        }
+        finally {
+            // No-op for those complete; Abandons the rest on failure.
+            for (ResultSetFuture future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /** Executes a statement asynchronously, releasing its (already acquired) permit on completion. */
+    private ResultSetFuture executeAsync(final Permit permit, Statement statement) {
+
+        ResultSetFuture future;
+
+        try {
+            future = m_session.executeAsync(statement);
+        }
+        catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+
+        future.addListener(new Runnable() {
+
+            @Override
+            public void run() {
+                permit.release();
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        return future;
     }
 
 }
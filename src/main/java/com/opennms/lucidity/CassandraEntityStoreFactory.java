@@ -15,8 +15,11 @@
  */
 package com.opennms.lucidity;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -24,6 +27,12 @@ import javax.inject.Singleton;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.RoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 
 
 /**
@@ -35,13 +44,17 @@ import com.datastax.driver.core.exceptions.DriverException;
 public class CassandraEntityStoreFactory implements EntityStoreFactory {
 
     private final Session m_session;
-    private final ConsistencyLevel m_consistency;
+    private final String m_keyspace;
+    private final ConsistencyPolicy m_consistency;
+    private final RequestLimiter m_limiter = new RequestLimiter();
+    private volatile SpeculativeReadPolicy m_speculativeReads;
+    private volatile WriteRetryPolicy m_writeRetries;
 
     /**
      * Creates a new {@link CassandraEntityStoreFactory} instance.
      * 
      * @param host
-     *            a Cassandra cluster host to connect to
+     *            a Cassandra cluster host to connect to, (or a comma-separated list of hosts)
      * @param port
      *            port number for Cassandra's native protocol
      * @param keyspace
@@ -51,15 +64,52 @@ public class CassandraEntityStoreFactory implements EntityStoreFactory {
      */
     @Inject
     public CassandraEntityStoreFactory(@Named("cassandraHost") String host, @Named("cassandraPort") int port, @Named("cassandraKeyspace") String keyspace, @Named("cassandraConsistency") ConsistencyLevel consistency) {
+        this(Lists.newArrayList(Splitter.on(',').trimResults().omitEmptyStrings().split(checkNotNull(host, "Cassandra hostname"))), port, keyspace, consistency, null);
+    }
+
+    /**
+     * Creates a new {@link CassandraEntityStoreFactory} instance. Statements are routed to a
+     * replica of the data they access (token-aware); If a local data center is named, only its
+     * nodes are used, (remote nodes are never tried, and requests fail while the local data center
+     * is unavailable). Use a <code>LOCAL_*</code> consistency level with a local data center, so
+     * that requests don't wait on remote replicas.
+     * 
+     * @param hosts
+     *            Cassandra cluster hosts to use as contact points
+     * @param port
+     *            port number for Cassandra's native protocol
+     * @param keyspace
+     *            application keyspace
+     * @param consistency
+     *            default consistency level
+     * @param localDataCenter
+     *            name of the local data center, or null for a single data center cluster
+     */
+    public CassandraEntityStoreFactory(Collection<String> hosts, int port, String keyspace, ConsistencyLevel consistency, String localDataCenter) {
 
-        checkNotNull(host, "Cassandra hostname");
+        checkNotNull(hosts, "Cassandra hostnames");
+        checkArgument(!hosts.isEmpty(), "at least one Cassandra host is required");
         checkNotNull(port, "Cassandra port number");
         checkNotNull(keyspace, "Cassandra keyspace");
         checkNotNull(consistency, "Cassandra consistency level");
 
-        m_consistency = consistency;
+        m_keyspace = keyspace;
+        m_consistency = new ConsistencyPolicy(consistency);
+
+        LoadBalancingPolicy childPolicy;
+
+        if (localDataCenter != null) {
+            childPolicy = new DCAwareRoundRobinPolicy(localDataCenter);
+        }
+        else {
+            childPolicy = new RoundRobinPolicy();
+        }
 
-        Cluster cluster = Cluster.builder().withPort(port).addContactPoint(host).build();
+        Cluster cluster = Cluster.builder()
+                .withPort(port)
+                .addContactPoints(hosts.toArray(new String[hosts.size()]))
+                .withLoadBalancingPolicy(new TokenAwarePolicy(childPolicy))
+                .build();
 
         try {
             m_session = cluster.connect(keyspace);
@@ -70,9 +120,58 @@ public class CassandraEntityStoreFactory implements EntityStoreFactory {
 
     }
 
+    /**
+     * Returns the {@link ConsistencyPolicy} shared by all of the stores this factory creates. Use it
+     * to set default read, write, and index consistency levels, (per entity type, if need be). The
+     * consistency level this factory was created with is the fallback.
+     * 
+     * @return the consistency policy
+     */
+    public ConsistencyPolicy getConsistencyPolicy() {
+        return m_consistency;
+    }
+
+    /**
+     * Returns the {@link RequestLimiter} shared by all of the stores this factory creates. Use it to
+     * configure in-flight limits and admission, and to monitor in-flight counts and wait times.
+     * 
+     * @return the request limiter
+     */
+    public RequestLimiter getRequestLimiter() {
+        return m_limiter;
+    }
+
+    /**
+     * Enables speculative (hedged) reads for stores subsequently created by this factory.
+     * 
+     * @param policy
+     *            speculative read policy, or null to disable
+     */
+    public void setSpeculativeReadPolicy(SpeculativeReadPolicy policy) {
+        m_speculativeReads = policy;
+    }
+
+    public SpeculativeReadPolicy getSpeculativeReadPolicy() {
+        return m_speculativeReads;
+    }
+
+    /**
+     * Enables the retry of timed out writes for stores subsequently created by this factory.
+     * 
+     * @param policy
+     *            write retry policy, or null to disable
+     */
+    public void setWriteRetryPolicy(WriteRetryPolicy policy) {
+        m_writeRetries = policy;
+    }
+
+    public WriteRetryPolicy getWriteRetryPolicy() {
+        return m_writeRetries;
+    }
+
     @Override
     public EntityStore createEntityStore() {
-        return new CassandraEntityStore(m_session, m_consistency);
+        return new CassandraEntityStore(m_session, m_keyspace, m_consistency, m_limiter, m_speculativeReads, m_writeRetries);
     }
 
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Maps;
+
+
+/**
+ * Default consistency levels, used by the {@link EntityStore} methods that don't take one. Reads
+ * and writes have separate defaults, as do reads of index and join tables, and each can be
+ * overridden per entity type. Anything left unset falls back to the consistency level the policy
+ * was created with.
+ * <p>
+ * For example, to read a cache-like entity at <code>ONE</code>, while still writing it at
+ * <code>LOCAL_QUORUM</code>:
+ *
+ * <pre>
+ * ConsistencyPolicy policy = factory.getConsistencyPolicy();
+ * policy.setRead(UserSession.class, ConsistencyLevel.ONE);
+ * policy.setWrite(UserSession.class, ConsistencyLevel.LOCAL_QUORUM);
+ * </pre>
+ */
+public class ConsistencyPolicy {
+
+    private final ConsistencyLevel m_fallback;
+    private volatile ConsistencyLevel m_read;
+    private volatile ConsistencyLevel m_write;
+    private volatile ConsistencyLevel m_indexRead;
+    private final ConcurrentMap<Class<?>, ConsistencyLevel> m_reads = Maps.newConcurrentMap();
+    private final ConcurrentMap<Class<?>, ConsistencyLevel> m_writes = Maps.newConcurrentMap();
+    private final ConcurrentMap<Class<?>, ConsistencyLevel> m_indexReads = Maps.newConcurrentMap();
+
+    /**
+     * @param fallback
+     *            consistency level used for anything not otherwise configured
+     */
+    public ConsistencyPolicy(ConsistencyLevel fallback) {
+        m_fallback = checkNotNull(fallback, "fallback argument");
+    }
+
+    /** Sets the default consistency level of reads, for all entity types. */
+    public void setRead(ConsistencyLevel consistency) {
+        m_read = consistency;
+    }
+
+    /** Sets the default consistency level of reads, for one entity type. */
+    public void setRead(Class<?> type, ConsistencyLevel consistency) {
+        put(m_reads, type, consistency);
+    }
+
+    /** Sets the default consistency level of writes (and deletes), for all entity types. */
+    public void setWrite(ConsistencyLevel consistency) {
+        m_write = consistency;
+    }
+
+    /** Sets the default consistency level of writes (and deletes), for one entity type. */
+    public void setWrite(Class<?> type, ConsistencyLevel consistency) {
+        put(m_writes, type, consistency);
+    }
+
+    /** Sets the default consistency level of index and join table reads, for all entity types. */
+    public void setIndexRead(ConsistencyLevel consistency) {
+        m_indexRead = consistency;
+    }
+
+    /** Sets the default consistency level of index and join table reads, for one entity type. */
+    public void setIndexRead(Class<?> type, ConsistencyLevel consistency) {
+        put(m_indexReads, type, consistency);
+    }
+
+    /**
+     * Returns the consistency level for reads of an entity type; The first of the per-type read
+     * level, the global read level, or the fallback.
+     */
+    public ConsistencyLevel getRead(Class<?> type) {
+        return first(m_reads.get(type), m_read, m_fallback);
+    }
+
+    /**
+     * Returns the consistency level for writes of an entity type; The first of the per-type write
+     * level, the global write level, or the fallback.
+     */
+    public ConsistencyLevel getWrite(Class<?> type) {
+        return first(m_writes.get(type), m_write, m_fallback);
+    }
+
+    /**
+     * Returns the consistency level for reads of an entity type's index and join tables; The first
+     * of the per-type index level, the global index level, or the type's read level.
+     */
+    public ConsistencyLevel getIndexRead(Class<?> type) {
+        return first(m_indexReads.get(type), m_indexRead, getRead(type));
+    }
+
+    private static void put(ConcurrentMap<Class<?>, ConsistencyLevel> map, Class<?> type, ConsistencyLevel consistency) {
+        checkNotNull(type, "type argument");
+
+        if (consistency == null) {
+            map.remove(type);
+        }
+        else {
+            map.put(type, consistency);
+        }
+    }
+
+    private static ConsistencyLevel first(ConsistencyLevel... levels) {
+        for (ConsistencyLevel level : levels) {
+            if (level != null) return level;
+        }
+        throw new IllegalStateException("no consistency level");
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import java.util.Set;
+
+
+/**
+ * Optionally implemented by entities that track which of their fields have been assigned. An
+ * update of such an entity considers only the (standard) columns of the fields reported dirty;
+ * All others are taken to be unchanged, and are neither compared against the tracked state nor
+ * written. An update drains the dirty fields before it snapshots the instance, so a field assigned
+ * while it is in flight stays dirty, and is written by the next; Should the update fail, the fields
+ * it drained are marked dirty again. The dirty fields are also drained once an instance is created
+ * or read.
+ * <p>
+ * Typically, each setter marks its field, (after assigning it):
+ *
+ * <pre>
+ * public void setSurname(String surname) {
+ *     m_surname = surname;
+ *     m_dirty.add("m_surname");
+ * }
+ * </pre>
+ *
+ * Names are those of the fields, (not the columns). An update fails with an
+ * {@link IllegalArgumentException} if a name reported is not that of a column (or counter) field,
+ * rather than skip the write of a misspelled one. Collection fields need not be marked; Their
+ * changes are recorded by the collections themselves. Instances shared between threads must
+ * drain and mark their fields atomically, (a concurrent set, for example).
+ */
+public interface DirtyTracking {
+
+    /**
+     * Returns the names of the fields assigned since last drained, and clears them, (atomically).
+     *
+     * @return the dirty field names
+     */
+    Set<String> drainDirtyFields();
+
+    /**
+     * Marks fields dirty, (those drained by an update that failed).
+     *
+     * @param fieldNames
+     *            names of the fields to mark
+     */
+    void markDirtyFields(Set<String> fieldNames);
+
+}
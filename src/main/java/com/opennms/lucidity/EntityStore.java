@@ -23,6 +23,7 @@ package com.opennms.lucidity;
 
 import java.io.Closeable;
 import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 import com.google.common.base.Optional;
@@ -50,6 +51,32 @@ public interface EntityStore extends Closeable {
      */
     <T> T create(T obj, ConsistencyLevel consistency);
 
+    /**
+     * Persist a new object using the default consistency level, and the given time-to-live (in
+     * place of the entity's default, see {@link com.opennms.lucidity.annotations.Table#ttl()}).
+     * 
+     * @param obj
+     *            the object to persist
+     * @param ttl
+     *            time-to-live in seconds, or 0 for none
+     * @return a tracked instance of the persisted object
+     */
+    <T> T create(T obj, int ttl);
+
+    /**
+     * Persist a new object with the specified consistency level, and the given time-to-live (in
+     * place of the entity's default, see {@link com.opennms.lucidity.annotations.Table#ttl()}).
+     * 
+     * @param obj
+     *            the object to persist
+     * @param consistency
+     *            consistency level to use
+     * @param ttl
+     *            time-to-live in seconds, or 0 for none
+     * @return a tracked instance of the persisted object
+     */
+    <T> T create(T obj, ConsistencyLevel consistency, int ttl);
+
     /**
      * Persists changes to an object using the default consistency level. The supplied argument must
      * be a tracked instance, an instance returned from either a <code>create(...)</code> or
@@ -73,7 +100,37 @@ public interface EntityStore extends Closeable {
     <T> void update(T obj, ConsistencyLevel consistency);
 
     /**
-     * Read an object by its ID using the default consistency level.
+     * Persists changes to an object using the default consistency level, and the given
+     * time-to-live (in place of the entity's default, see
+     * {@link com.opennms.lucidity.annotations.Table#ttl()}). With a time-to-live, the object is
+     * rewritten whole, (along with its index and relation rows), so that all of it expires
+     * together.
+     * 
+     * @param obj
+     *            the object to update
+     * @param ttl
+     *            time-to-live in seconds, or 0 for none
+     */
+    <T> void update(T obj, int ttl);
+
+    /**
+     * Persists changes to an object with the specified consistency level, and the given
+     * time-to-live (in place of the entity's default, see
+     * {@link com.opennms.lucidity.annotations.Table#ttl()}). With a time-to-live, the object is
+     * rewritten whole, (along with its index and relation rows), so that all of it expires
+     * together.
+     * 
+     * @param obj
+     *            the object to update
+     * @param ttl
+     *            time-to-live in seconds, or 0 for none
+     */
+    <T> void update(T obj, ConsistencyLevel consistency, int ttl);
+
+    /**
+     * Read an object by its ID using the default consistency level. Related entities, (those of its
+     * {@link com.opennms.lucidity.annotations.OneToMany} fields), are read along with it; See
+     * {@link #readRelationIDs(Class, UUID, String)} to avoid that for large relations.
      * 
      * @param cls
      *            class of the object to read
@@ -122,6 +179,251 @@ public interface EntityStore extends Closeable {
      */
     <T> Collection<T> read(Class<T> cls, String indexedName, Object value, ConsistencyLevel consistency);
 
+    /**
+     * Read the IDs of an object's related entities, using the default consistency level (of index
+     * and join table reads). Related entities are not read, and IDs stored in a join table are
+     * paged through as the result is iterated, so this is suited to relations too large to read
+     * whole.
+     *
+     * @param cls
+     *            class of the owning object
+     * @param id
+     *            ID of the owning object
+     * @param relationName
+     *            name of the {@link com.opennms.lucidity.annotations.OneToMany} field
+     * @return the related IDs
+     */
+    Iterable<UUID> readRelationIDs(Class<?> cls, UUID id, String relationName);
+
+    /**
+     * Read the IDs of an object's related entities, with the specified consistency level. Related
+     * entities are not read, and IDs stored in a join table are paged through as the result is
+     * iterated, so this is suited to relations too large to read whole.
+     *
+     * @param cls
+     *            class of the owning object
+     * @param id
+     *            ID of the owning object
+     * @param relationName
+     *            name of the {@link com.opennms.lucidity.annotations.OneToMany} field
+     * @return the related IDs
+     */
+    Iterable<UUID> readRelationIDs(Class<?> cls, UUID id, String relationName, ConsistencyLevel consistency);
+
+    /**
+     * Read the objects that own a related entity, using the default consistency level. The
+     * relation must be reversed (see {@link com.opennms.lucidity.annotations.OneToMany#reversed()}).
+     *
+     * @param cls
+     *            class of the owning objects
+     * @param relationName
+     *            name of the {@link com.opennms.lucidity.annotations.OneToMany} field
+     * @param relationID
+     *            ID of the related entity
+     * @return a {@link Collection} of owning objects.
+     */
+    <T> Collection<T> readParents(Class<T> cls, String relationName, UUID relationID);
+
+    /**
+     * Read the objects that own a related entity, with the specified consistency level. The
+     * relation must be reversed (see {@link com.opennms.lucidity.annotations.OneToMany#reversed()}).
+     *
+     * @param cls
+     *            class of the owning objects
+     * @param relationName
+     *            name of the {@link com.opennms.lucidity.annotations.OneToMany} field
+     * @param relationID
+     *            ID of the related entity
+     * @return a {@link Collection} of owning objects.
+     */
+    <T> Collection<T> readParents(Class<T> cls, String relationName, UUID relationID, ConsistencyLevel consistency);
+
+    /**
+     * Read projections of objects by an indexed value, using the default consistency level. The
+     * index must cover other columns (see {@link com.opennms.lucidity.annotations.Index#covering()}),
+     * and only the ID, the indexed column, and the covered columns of each object are populated.
+     * Projections are read from the index alone, and are not tracked (they cannot be updated).
+     * 
+     * @param cls
+     *            class of the object to read
+     * @param indexedName
+     *            name of the indexed column
+     * @param value
+     *            value the column is expected to match
+     * @return a {@link Collection} of partially populated objects.
+     */
+    <T> Collection<T> readProjection(Class<T> cls, String indexedName, Object value);
+
+    /**
+     * Read projections of objects by an indexed value, with the specified consistency level. The
+     * index must cover other columns (see {@link com.opennms.lucidity.annotations.Index#covering()}),
+     * and only the ID, the indexed column, and the covered columns of each object are populated.
+     * Projections are read from the index alone, and are not tracked (they cannot be updated).
+     * 
+     * @param cls
+     *            class of the object to read
+     * @param indexedName
+     *            name of the indexed column
+     * @param value
+     *            value the column is expected to match
+     * @return a {@link Collection} of partially populated objects.
+     */
+    <T> Collection<T> readProjection(Class<T> cls, String indexedName, Object value, ConsistencyLevel consistency);
+
+    /**
+     * Count the objects with an indexed value, using the default consistency level. Only the IDs
+     * in the index are read, (a page at a time); The objects themselves are not.
+     *
+     * @param cls
+     *            class of the objects to count
+     * @param indexedName
+     *            name of the indexed column
+     * @param value
+     *            value the column is expected to match
+     * @return the number of matching objects
+     */
+    long count(Class<?> cls, String indexedName, Object value);
+
+    /**
+     * Count the objects with an indexed value, with the specified consistency level. Only the IDs
+     * in the index are read, (a page at a time); The objects themselves are not.
+     *
+     * @param cls
+     *            class of the objects to count
+     * @param indexedName
+     *            name of the indexed column
+     * @param value
+     *            value the column is expected to match
+     * @return the number of matching objects
+     */
+    long count(Class<?> cls, String indexedName, Object value, ConsistencyLevel consistency);
+
+    /**
+     * Return an approximate count of the objects with an indexed value, using the default
+     * consistency level. The index must be counted (see
+     * {@link com.opennms.lucidity.annotations.Index#counted()}); The count is read from a single
+     * counter, which is maintained alongside (but not atomically with) the index, and can drift.
+     *
+     * @param cls
+     *            class of the objects to count
+     * @param indexedName
+     *            name of the indexed column
+     * @param value
+     *            value the column is expected to match
+     * @return the approximate number of matching objects
+     */
+    long approximateCount(Class<?> cls, String indexedName, Object value);
+
+    /**
+     * Return an approximate count of the objects with an indexed value, with the specified
+     * consistency level. The index must be counted (see
+     * {@link com.opennms.lucidity.annotations.Index#counted()}); The count is read from a single
+     * counter, which is maintained alongside (but not atomically with) the index, and can drift.
+     *
+     * @param cls
+     *            class of the objects to count
+     * @param indexedName
+     *            name of the indexed column
+     * @param value
+     *            value the column is expected to match
+     * @return the approximate number of matching objects
+     */
+    long approximateCount(Class<?> cls, String indexedName, Object value, ConsistencyLevel consistency);
+
+    /**
+     * Read objects by the values of several columns, using the default consistency level. The
+     * columns must make up a composite index, (or be a single indexed column).
+     * 
+     * @param cls
+     *            class of the object to read
+     * @param values
+     *            column names, mapped to the values they are expected to match
+     * @return a {@link Collection} of the requested objects.
+     */
+    <T> Collection<T> read(Class<T> cls, Map<String, ?> values);
+
+    /**
+     * Read objects by the values of several columns, with the specified consistency level. The
+     * columns must make up a composite index, (or be a single indexed column).
+     * 
+     * @param cls
+     *            class of the object to read
+     * @param values
+     *            column names, mapped to the values they are expected to match
+     * @return a {@link Collection} of the requested objects.
+     */
+    <T> Collection<T> read(Class<T> cls, Map<String, ?> values, ConsistencyLevel consistency);
+
+    /**
+     * Read objects by a range of values of an {@link com.opennms.lucidity.annotations.IndexType#ORDERED}
+     * indexed column, a page at a time, using the default consistency level. Results are in order of
+     * the indexed value.
+     * 
+     * @param cls
+     *            class of the object to read
+     * @param indexedName
+     *            name of the indexed column
+     * @param start
+     *            lowest value in the range (inclusive), or null for no lower bound
+     * @param end
+     *            highest value in the range (inclusive), or null for no upper bound
+     * @param pageSize
+     *            maximum number of objects per page
+     * @return the first {@link Page} of the requested objects.
+     */
+    <T> Page<T> readRange(Class<T> cls, String indexedName, Object start, Object end, int pageSize);
+
+    /**
+     * Read objects by a range of values of an {@link com.opennms.lucidity.annotations.IndexType#ORDERED}
+     * indexed column, a page at a time, with the specified consistency level. Results are in order
+     * of the indexed value.
+     * 
+     * @param cls
+     *            class of the object to read
+     * @param indexedName
+     *            name of the indexed column
+     * @param start
+     *            lowest value in the range (inclusive), or null for no lower bound
+     * @param end
+     *            highest value in the range (inclusive), or null for no upper bound
+     * @param pageSize
+     *            maximum number of objects per page
+     * @return the first {@link Page} of the requested objects.
+     */
+    <T> Page<T> readRange(Class<T> cls, String indexedName, Object start, Object end, int pageSize, ConsistencyLevel consistency);
+
+    /**
+     * Increment a counter column of an object, using the default consistency level. The object is
+     * not read, and tracked instances of it are left as they are, (an update of one writes only
+     * its own changes to the counter).
+     *
+     * @param cls
+     *            class of the object
+     * @param id
+     *            ID of the object
+     * @param counterName
+     *            name of the {@link com.opennms.lucidity.annotations.Counter} column
+     * @param delta
+     *            amount to add, (negative to decrement)
+     */
+    void increment(Class<?> cls, UUID id, String counterName, long delta);
+
+    /**
+     * Increment a counter column of an object, with the specified consistency level. The object is
+     * not read, and tracked instances of it are left as they are, (an update of one writes only
+     * its own changes to the counter).
+     *
+     * @param cls
+     *            class of the object
+     * @param id
+     *            ID of the object
+     * @param counterName
+     *            name of the {@link com.opennms.lucidity.annotations.Counter} column
+     * @param delta
+     *            amount to add, (negative to decrement)
+     */
+    void increment(Class<?> cls, UUID id, String counterName, long delta, ConsistencyLevel consistency);
+
     /**
      * Delete an object using the default consistency level.
      * 
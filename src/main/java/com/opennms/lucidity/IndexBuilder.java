@@ -0,0 +1,480 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.timestamp;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.unloggedBatch;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.opennms.lucidity.Schema.indexTableName;
+import static java.lang.String.format;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.Batch;
+import com.datastax.driver.core.querybuilder.Insert;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.opennms.lucidity.Schema.ColumnSpec;
+
+
+/**
+ * Builds (or back-fills) the index of a column, from the entities already stored. Run it after
+ * adding an {@link com.opennms.lucidity.annotations.Index} to an existing column (and creating its
+ * index table), while the application carries on writing.
+ * <p>
+ * The entity table is scanned by token range, a number of ranges at a time, and index rows are
+ * written in unlogged batches, at a limited rate. Each index row is written with the timestamp of
+ * the value it indexes, so that it never outlives the removal of that value by a concurrent
+ * update. Completed ranges can be recorded to a checkpoint file, so that an interrupted build can
+ * pick up where it left off. A {@link #verify()} pass checks every entity for its index rows.
+ * <p>
+ * Token ranges are those of the <code>Murmur3Partitioner</code>, (the default partitioner).
+ * <code>NATIVE</code> indexes are built by Cassandra itself, and composite indexes are not (yet)
+ * supported. Nor are counted indexes; Their counts are increments, (which can't be replayed over a
+ * range, or resumed from a checkpoint, without counting entities twice), so a build of one would
+ * leave them ignoring every row it wrote.
+ */
+public class IndexBuilder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexBuilder.class);
+
+    static final BigInteger MIN_TOKEN = BigInteger.valueOf(Long.MIN_VALUE);
+    static final BigInteger MAX_TOKEN = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final CassandraEntityStore m_store;
+    private final Schema m_schema;
+    private final ColumnSpec m_column;
+    private int m_splits = 256;
+    private int m_parallelism = 4;
+    private int m_batchSize = 100;
+    private int m_fetchSize = 1000;
+    private RateLimiter m_rateLimiter = RateLimiter.create(1000.0d);
+    private ConsistencyLevel m_consistency;
+    private File m_checkpoint;
+
+    private final AtomicLong m_rangesCompleted = new AtomicLong();
+    private final AtomicLong m_rowsScanned = new AtomicLong();
+    private final AtomicLong m_indexRowsWritten = new AtomicLong();
+
+    /**
+     * @param store
+     *            entity store (connected to the keyspace of the entity)
+     * @param cls
+     *            the entity class
+     * @param indexedName
+     *            name of the indexed column
+     */
+    public IndexBuilder(CassandraEntityStore store, Class<?> cls, String indexedName) {
+        m_store = checkNotNull(store, "store argument");
+        m_schema = store.getSchema(checkNotNull(cls, "class argument"));
+        m_column = getIndexedColumn(m_schema, checkNotNull(indexedName, "indexedName argument"));
+        m_consistency = store.getConsistencyPolicy().getWrite(cls);
+    }
+
+    /** Returns the column of an index that can be built, (one with an index table, and no counts). */
+    static ColumnSpec getIndexedColumn(Schema schema, String indexedName) {
+
+        ColumnSpec colSpec = schema.getColumn(indexedName);
+        String entityName = schema.getObjectType().getSimpleName();
+
+        if (colSpec == null || !colSpec.hasIndexTable()) {
+            throw new IllegalArgumentException(format("no index table for column '%s' of %s", indexedName, entityName));
+        }
+
+        if (colSpec.isIndexCounted()) {
+            throw new IllegalArgumentException(format(
+                    "the index of column '%s' of %s is counted, and its counts can't be rebuilt; Drop counted=true to build it",
+                    indexedName,
+                    entityName));
+        }
+
+        return colSpec;
+    }
+
+    /** Sets the number of token ranges the entity table is scanned in (default 256). */
+    public IndexBuilder setSplits(int splits) {
+        checkArgument(splits > 0, "splits must be positive");
+        m_splits = splits;
+        return this;
+    }
+
+    /** Sets the number of token ranges scanned concurrently (default 4). */
+    public IndexBuilder setParallelism(int parallelism) {
+        checkArgument(parallelism > 0, "parallelism must be positive");
+        m_parallelism = parallelism;
+        return this;
+    }
+
+    /** Sets the maximum number of index rows written per (unlogged) batch (default 100). */
+    public IndexBuilder setBatchSize(int batchSize) {
+        checkArgument(batchSize > 0, "batch size must be positive");
+        m_batchSize = batchSize;
+        return this;
+    }
+
+    /** Sets the number of entity rows fetched per page of a scan (default 1000). */
+    public IndexBuilder setFetchSize(int fetchSize) {
+        checkArgument(fetchSize > 0, "fetch size must be positive");
+        m_fetchSize = fetchSize;
+        return this;
+    }
+
+    /** Sets the maximum number of index rows written per second, across all ranges (default 1000). */
+    public IndexBuilder setRate(double rowsPerSecond) {
+        checkArgument(rowsPerSecond > 0.0d, "rate must be positive");
+        m_rateLimiter = RateLimiter.create(rowsPerSecond);
+        return this;
+    }
+
+    /** Sets the consistency level of reads and writes (default, the entity's write level). */
+    public IndexBuilder setConsistencyLevel(ConsistencyLevel consistency) {
+        m_consistency = checkNotNull(consistency, "consistency argument");
+        return this;
+    }
+
+    /** Sets a file to record completed token ranges to (and resume from), or null for none. */
+    public IndexBuilder setCheckpoint(File checkpoint) {
+        m_checkpoint = checkpoint;
+        return this;
+    }
+
+    /** Number of token ranges completed. */
+    public long getRangesCompleted() {
+        return m_rangesCompleted.get();
+    }
+
+    /** Number of entity rows scanned. */
+    public long getRowsScanned() {
+        return m_rowsScanned.get();
+    }
+
+    /** Number of index rows written. */
+    public long getIndexRowsWritten() {
+        return m_indexRowsWritten.get();
+    }
+
+    /**
+     * Builds the index, skipping any token ranges recorded as complete in the checkpoint file.
+     *
+     * @return the number of index rows written
+     */
+    public long build() throws IOException {
+
+        final Set<String> completed = readCheckpoint();
+        final Writer checkpoint = (m_checkpoint != null) ? new FileWriter(m_checkpoint, true) : null;
+
+        try {
+            List<Callable<Void>> tasks = Lists.newArrayList();
+
+            for (final BigInteger[] range : getRanges(m_splits)) {
+
+                if (completed.contains(rangeKey(range))) {
+                    LOG.debug("Skipping completed range {}", rangeKey(range));
+                    continue;
+                }
+
+                tasks.add(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws IOException {
+                        buildRange(range);
+                        m_rangesCompleted.incrementAndGet();
+
+                        if (checkpoint != null) {
+                            synchronized (checkpoint) {
+                                checkpoint.write(rangeKey(range) + System.lineSeparator());
+                                checkpoint.flush();
+                            }
+                        }
+
+                        return null;
+                    }
+                });
+            }
+
+            LOG.info("Building index {} ({} of {} ranges)", indexTableName(m_schema.getTableName(), m_column.getName()), tasks.size(), m_splits);
+            invokeAll(tasks);
+            LOG.info("Index built; {} rows scanned, {} index rows written", getRowsScanned(), getIndexRowsWritten());
+
+            return getIndexRowsWritten();
+        }
+        finally {
+            if (checkpoint != null) checkpoint.close();
+        }
+    }
+
+    /**
+     * Verifies the index, checking that every entity has the index rows it should.
+     *
+     * @return the number of index rows missing
+     */
+    public long verify() {
+
+        final AtomicLong missing = new AtomicLong();
+        List<Callable<Void>> tasks = Lists.newArrayList();
+
+        for (final BigInteger[] range : getRanges(m_splits)) {
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    for (Row row : scan(range)) {
+                        UUID id = row.getUUID(m_schema.getID().getName());
+
+                        for (Object value : m_column.getIndexedValues(m_store.getColumnValue(m_column, row))) {
+                            Statement select = m_store.selectIndexRow(m_schema, m_column, value, id);
+
+                            if (m_store.executeStatement(m_schema, select, m_consistency).one() == null) {
+                                LOG.warn("Missing index row for {} (entity {})", value, id);
+                                missing.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        invokeAll(tasks);
+
+        return missing.get();
+    }
+
+    private void buildRange(BigInteger[] range) {
+
+        List<RegularStatement> pending = Lists.newArrayList();
+        String idName = m_schema.getID().getName();
+
+        for (Row row : scan(range)) {
+            m_rowsScanned.incrementAndGet();
+
+            UUID id = row.getUUID(idName);
+            Object value = m_store.getColumnValue(m_column, row);
+            Map<String, Object> columns = Maps.newHashMap();
+
+            for (ColumnSpec covered : m_schema.getCoveredColumns(m_column)) {
+                columns.put(covered.getName(), m_store.getColumnValue(covered, row));
+            }
+
+            Map<String, Object> covered = m_store.getCoveredValues(m_schema, m_column, columns);
+
+            for (Object indexed : m_column.getIndexedValues(value)) {
+                Optional<Insert> insert = m_store.insertIndexRow(m_schema, m_column, indexed, id, covered);
+
+                if (!insert.isPresent()) {
+                    continue;
+                }
+
+                // Never newer than the value it indexes (no write-time is kept for collections).
+                if (!m_column.isCollection() && !row.isNull(writeTimeName(m_column.getName()))) {
+                    insert.get().using(timestamp(row.getLong(writeTimeName(m_column.getName()))));
+                }
+
+                pending.add(insert.get());
+
+                if (pending.size() >= m_batchSize) {
+                    flush(pending);
+                }
+            }
+        }
+
+        flush(pending);
+    }
+
+    private void flush(List<RegularStatement> pending) {
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        m_rateLimiter.acquire(pending.size());
+
+        Batch batch = unloggedBatch();
+
+        for (RegularStatement statement : pending) {
+            batch.add(statement);
+        }
+
+        m_store.executeStatement(m_schema, batch, m_consistency);
+        m_indexRowsWritten.addAndGet(pending.size());
+        pending.clear();
+    }
+
+    /** Scans the entity rows (ID, indexed, and covered columns) of a token range. */
+    private Iterable<Row> scan(BigInteger[] range) {
+
+        String idName = m_schema.getID().getName();
+        List<String> columns = Lists.newArrayList(idName, m_column.getName());
+
+        if (!m_column.isCollection()) {
+            columns.add(format("writetime(%s)", m_column.getName()));
+        }
+
+        for (ColumnSpec covered : m_schema.getCoveredColumns(m_column)) {
+            columns.add(covered.getName());
+        }
+
+        Statement select = new SimpleStatement(format(
+                "SELECT %s FROM %s WHERE token(%s) > %d AND token(%s) <= %d",
+                Joiner.on(", ").join(columns),
+                m_schema.getTableName(),
+                idName,
+                range[0],
+                idName,
+                range[1]));
+        select.setFetchSize(m_fetchSize);
+
+        return m_store.executeStatement(m_schema, select, m_consistency);
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+
+        ExecutorService executor = Executors.newFixedThreadPool(m_parallelism);
+
+        try {
+            List<Future<Void>> futures = Lists.newArrayList();
+
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+
+            for (Future<Void> future : futures) {
+                Uninterruptibles.getUninterruptibly(future);
+            }
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Set<String> readCheckpoint() throws IOException {
+
+        Set<String> completed = Sets.newHashSet();
+
+        if (m_checkpoint == null || !m_checkpoint.exists()) {
+            return completed;
+        }
+
+        BufferedReader reader = new BufferedReader(new FileReader(m_checkpoint));
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) completed.add(line.trim());
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return completed;
+    }
+
+    private static String writeTimeName(String column) {
+        return format("writetime(%s)", column);
+    }
+
+    private static String rangeKey(BigInteger[] range) {
+        return format("%s,%s", range[0], range[1]);
+    }
+
+    /**
+     * Splits the token ring into ranges, (start exclusive, end inclusive).
+     */
+    static List<BigInteger[]> getRanges(int splits) {
+
+        List<BigInteger[]> ranges = Lists.newArrayList();
+        BigInteger span = MAX_TOKEN.subtract(MIN_TOKEN);
+        BigInteger start = MIN_TOKEN;
+
+        for (int i = 1; i <= splits; i++) {
+            BigInteger end = (i == splits) ? MAX_TOKEN : MIN_TOKEN.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(splits)));
+            ranges.add(new BigInteger[] { start, end });
+            start = end;
+        }
+
+        return ranges;
+    }
+
+    public static void main(String... args) throws IOException {
+
+        if (args.length < 5 || args.length > 6) {
+            System.err.printf(
+                    "Usage: java %s <host> <port> <keyspace> <entity class> <column> [checkpoint file]%n",
+                    IndexBuilder.class.getCanonicalName());
+            System.exit(1);
+        }
+
+        Class<?> cls;
+
+        try {
+            cls = Class.forName(args[3]);
+        }
+        catch (ClassNotFoundException e) {
+            System.err.printf("No such class: %s%n", args[3]);
+            System.exit(1);
+            return;
+        }
+
+        CassandraEntityStoreFactory factory = new CassandraEntityStoreFactory(args[0], Integer.parseInt(args[1]), args[2], ConsistencyLevel.QUORUM);
+        IndexBuilder builder = new IndexBuilder((CassandraEntityStore) factory.createEntityStore(), cls, args[4]);
+
+        if (args.length == 6) {
+            builder.setCheckpoint(new File(args[5]));
+        }
+
+        System.out.printf("%d index rows written (%d rows scanned)%n", builder.build(), builder.getRowsScanned());
+        System.out.printf("%d index rows missing%n", builder.verify());
+
+        System.exit(0);
+
+    }
+
+}
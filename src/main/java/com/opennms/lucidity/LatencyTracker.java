@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+
+/**
+ * Tracks the most recent latency samples in a fixed-size ring, and answers percentile queries
+ * over them. Percentiles are recomputed only periodically, (sorting the window on every query would
+ * cost more than the reads being measured).
+ */
+class LatencyTracker {
+
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private final long[] m_samples;
+    private final double m_percentile;
+    private int m_next = 0;
+    private int m_count = 0;
+    private int m_sinceComputed = 0;
+    private long m_cached = -1;
+
+    /**
+     * @param capacity
+     *            number of samples retained
+     * @param percentile
+     *            the percentile to track, (0.0 - 100.0 exclusive)
+     */
+    LatencyTracker(int capacity, double percentile) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        checkArgument(percentile > 0.0d && percentile < 100.0d, "percentile must be between 0 and 100");
+        m_samples = new long[capacity];
+        m_percentile = percentile;
+    }
+
+    synchronized void record(long nanos) {
+        m_samples[m_next] = nanos;
+        m_next = (m_next + 1) % m_samples.length;
+        m_count = Math.min(m_count + 1, m_samples.length);
+        m_sinceComputed++;
+    }
+
+    /** Number of samples currently held. */
+    synchronized int size() {
+        return m_count;
+    }
+
+    /**
+     * Returns the tracked percentile of the retained samples, in nanoseconds, or -1 if no samples
+     * have been recorded.
+     */
+    synchronized long getPercentile() {
+
+        if (m_count == 0) {
+            return -1;
+        }
+
+        if (m_cached < 0 || m_sinceComputed >= RECOMPUTE_INTERVAL) {
+            long[] sorted = Arrays.copyOf(m_samples, m_count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil((m_percentile / 100.0d) * m_count) - 1;
+            m_cached = sorted[Math.max(0, Math.min(index, m_count - 1))];
+            m_sinceComputed = 0;
+        }
+
+        return m_cached;
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+
+/**
+ * One page of the results of a range query. Pages are fetched lazily; Call {@link #next()} for the
+ * page that follows, (as long as {@link #hasNext()} is true). A page may be empty, even when it is
+ * not the last.
+ *
+ * @param <T>
+ *            entity type
+ */
+public class Page<T> implements Iterable<T> {
+
+    private final List<T> m_results;
+    private final Supplier<Page<T>> m_next;
+
+    /**
+     * @param results
+     *            the entities on this page
+     * @param next
+     *            supplies the next page, or null if this is the last
+     */
+    Page(List<T> results, Supplier<Page<T>> next) {
+        m_results = Collections.unmodifiableList(checkNotNull(results, "results argument"));
+        m_next = (next != null) ? Suppliers.memoize(next) : null;
+    }
+
+    /** The entities on this page, in index order. */
+    public List<T> getResults() {
+        return m_results;
+    }
+
+    /** True if there may be more results, (on a following page). */
+    public boolean hasNext() {
+        return m_next != null;
+    }
+
+    /** Fetches the next page. */
+    public Page<T> next() {
+        checkState(hasNext(), "no next page");
+        return m_next.get();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return m_results.iterator();
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+
+
+/**
+ * Tracks the progress of a range query across the buckets of an ordered index. Each bucket is
+ * read from the last value consumed from it, skipping the entries with that value that have
+ * already been returned, and the buckets' results are merged into value order. Where the index is
+ * also partitioned by period, the periods of the range are read in turn, (all of the buckets of
+ * one, and then the next).
+ */
+class RangeCursor {
+
+    /** An index entry; A value, and the ID of the entity it belongs to. */
+    static class IndexEntry {
+        private final Object m_value;
+        private final UUID m_id;
+
+        IndexEntry(Object value, UUID id) {
+            m_value = value;
+            m_id = id;
+        }
+
+        Object getValue() {
+            return m_value;
+        }
+
+        UUID getId() {
+            return m_id;
+        }
+
+    }
+
+    private final Object m_start;
+    private final Object m_end;
+    private final long m_lastPeriod;
+    private final Object[] m_from;
+    private final int[] m_skip;
+    private final boolean[] m_exhausted;
+    private long m_period;
+
+    /**
+     * @param buckets
+     *            number of buckets in the index
+     * @param start
+     *            lowest value in the range (inclusive), or null for no lower bound
+     * @param end
+     *            highest value in the range (inclusive), or null for no upper bound
+     */
+    RangeCursor(int buckets, Object start, Object end) {
+        this(buckets, start, end, 0, 0);
+    }
+
+    /**
+     * @param buckets
+     *            number of buckets in the index
+     * @param start
+     *            lowest value in the range (inclusive), or null for no lower bound
+     * @param end
+     *            highest value in the range (inclusive), or null for no upper bound
+     * @param firstPeriod
+     *            period of the start of the range
+     * @param lastPeriod
+     *            period of the end of the range
+     */
+    RangeCursor(int buckets, Object start, Object end, long firstPeriod, long lastPeriod) {
+        checkArgument(buckets > 0, "buckets must be positive");
+        m_start = start;
+        m_end = end;
+        m_period = firstPeriod;
+        m_lastPeriod = lastPeriod;
+        m_from = new Object[buckets];
+        m_skip = new int[buckets];
+        m_exhausted = new boolean[buckets];
+        Arrays.fill(m_from, start);
+    }
+
+    int getBuckets() {
+        return m_from.length;
+    }
+
+    /** The period being read. */
+    long getPeriod() {
+        return m_period;
+    }
+
+    /** Value to read the bucket from (inclusive), or null for no lower bound. */
+    Object getFrom(int bucket) {
+        return m_from[bucket];
+    }
+
+    /** Value to read up to (inclusive), or null for no upper bound. */
+    Object getEnd() {
+        return m_end;
+    }
+
+    /** Number of entries at the start of the bucket, (valued {@link #getFrom(int)}), already consumed. */
+    int getSkip(int bucket) {
+        return m_skip[bucket];
+    }
+
+    boolean isExhausted(int bucket) {
+        return m_exhausted[bucket];
+    }
+
+    /** True once every bucket of the period being read is exhausted. */
+    boolean isPeriodExhausted() {
+        for (boolean exhausted : m_exhausted) {
+            if (!exhausted) return false;
+        }
+        return true;
+    }
+
+    boolean isExhausted() {
+        return isPeriodExhausted() && m_period >= m_lastPeriod;
+    }
+
+    /**
+     * Moves on to the next period, (every bucket read from the start of the range again), once the
+     * one being read is exhausted.
+     *
+     * @return false if the period isn't exhausted, or was the last
+     */
+    boolean nextPeriod() {
+
+        if (!isPeriodExhausted() || m_period >= m_lastPeriod) {
+            return false;
+        }
+
+        m_period++;
+        Arrays.fill(m_from, m_start);
+        Arrays.fill(m_skip, 0);
+        Arrays.fill(m_exhausted, false);
+
+        return true;
+    }
+
+    /**
+     * Merges the entries read from each bucket, and consumes up to <code>limit</code> of them,
+     * advancing the cursor past those returned.
+     *
+     * @param entries
+     *            for each bucket, the entries read (after those skipped), in value order; null for
+     *            buckets that weren't read
+     * @param complete
+     *            for each bucket, true if everything remaining in range was read
+     * @param limit
+     *            maximum number of entries to consume
+     * @return the consumed entries, in value order
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    List<IndexEntry> advance(List<List<IndexEntry>> entries, boolean[] complete, int limit) {
+        checkArgument(entries.size() == getBuckets(), "one result per bucket required");
+
+        int[] position = new int[getBuckets()];
+        List<IndexEntry> consumed = Lists.newArrayList();
+
+        while (consumed.size() < limit) {
+            int lowest = -1;
+
+            for (int i = 0; i < getBuckets(); i++) {
+                List<IndexEntry> bucket = entries.get(i);
+
+                if (bucket == null || position[i] >= bucket.size()) {
+                    continue;
+                }
+
+                if (lowest < 0 || ((Comparable) bucket.get(position[i]).getValue()).compareTo(entries.get(lowest).get(position[lowest]).getValue()) < 0) {
+                    lowest = i;
+                }
+            }
+
+            if (lowest < 0) {
+                break;
+            }
+
+            IndexEntry entry = entries.get(lowest).get(position[lowest]++);
+
+            if (entry.getValue().equals(m_from[lowest])) {
+                m_skip[lowest]++;
+            }
+            else {
+                m_from[lowest] = entry.getValue();
+                m_skip[lowest] = 1;
+            }
+
+            consumed.add(entry);
+        }
+
+        for (int i = 0; i < getBuckets(); i++) {
+            if (entries.get(i) != null && complete[i] && position[i] >= entries.get(i).size()) {
+                m_exhausted[i] = true;
+            }
+        }
+
+        return consumed;
+    }
+
+}
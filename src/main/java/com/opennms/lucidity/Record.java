@@ -16,8 +16,9 @@
 package com.opennms.lucidity;
 
 
-import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import com.google.common.collect.Maps;
 
@@ -26,7 +27,7 @@ class Record {
 
     Object m_idValue;
     Map<String, Object> m_columns = Maps.newHashMap();
-    Map<String, Collection<?>> m_oneToManys = Maps.newHashMap();
+    Map<String, Set<UUID>> m_oneToManys = Maps.newHashMap();
 
     Record(Object idValue) {
         m_idValue = idValue;
@@ -44,11 +45,12 @@ class Record {
         m_columns.put(name, value);
     }
 
-    Map<String, Collection<?>> getOneToManys() {
+    /** IDs of related entities, by relation. */
+    Map<String, Set<UUID>> getOneToManys() {
         return m_oneToManys;
     }
 
-    void putOneToMany(String name, Collection<?> relations) {
+    void putOneToMany(String name, Set<UUID> relations) {
         m_oneToManys.put(name, relations);
     }
 
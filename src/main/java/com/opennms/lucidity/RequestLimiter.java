@@ -0,0 +1,347 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+
+/**
+ * Admission control for statements sent to Cassandra. Limits the number of statements in-flight at
+ * any one time, both globally and (optionally) per entity type. Statements that would exceed a
+ * limit either wait, or are rejected outright, depending on the {@link AdmissionMode}.
+ * <p>
+ * One limiter is shared by all of the {@link EntityStore}s created by a factory; Limits can be
+ * changed at any time, and take effect for the next statement admitted.
+ */
+public class RequestLimiter {
+
+    /** Limit value signifying no limit at all. */
+    public static final int UNLIMITED = 0;
+
+    /**
+     * A counting gate with an adjustable limit.
+     */
+    private static class Gate {
+        private final ReentrantLock m_lock = new ReentrantLock();
+        private final Condition m_available = m_lock.newCondition();
+        private volatile int m_limit;
+        private volatile int m_inFlight;
+
+        private Gate(int limit) {
+            m_limit = limit;
+        }
+
+        private boolean isFull() {
+            return (m_limit != UNLIMITED) && (m_inFlight >= m_limit);
+        }
+
+        private boolean tryEnter() {
+            m_lock.lock();
+            try {
+                if (isFull()) return false;
+                m_inFlight++;
+                return true;
+            }
+            finally {
+                m_lock.unlock();
+            }
+        }
+
+        private void enter() throws InterruptedException {
+            m_lock.lock();
+            try {
+                while (isFull()) {
+                    m_available.await();
+                }
+                m_inFlight++;
+            }
+            finally {
+                m_lock.unlock();
+            }
+        }
+
+        private void exit() {
+            m_lock.lock();
+            try {
+                m_inFlight--;
+                m_available.signal();
+            }
+            finally {
+                m_lock.unlock();
+            }
+        }
+
+        private void setLimit(int limit) {
+            m_lock.lock();
+            try {
+                m_limit = limit;
+                m_available.signalAll();
+            }
+            finally {
+                m_lock.unlock();
+            }
+        }
+
+    }
+
+    /**
+     * Evidence of admission; Must be released once the statement completes.
+     */
+    class Permit {
+        private final List<Gate> m_gates;
+        private final AtomicBoolean m_released = new AtomicBoolean(false);
+
+        private Permit(List<Gate> gates) {
+            m_gates = gates;
+        }
+
+        void release() {
+            if (!m_released.compareAndSet(false, true)) return;
+
+            for (Gate gate : m_gates) {
+                gate.exit();
+            }
+        }
+    }
+
+    private final Gate m_global = new Gate(UNLIMITED);
+    private final ConcurrentMap<Class<?>, Gate> m_perType = Maps.newConcurrentMap();
+    private final AtomicLong m_admitted = new AtomicLong();
+    private final AtomicLong m_rejected = new AtomicLong();
+    private final AtomicLong m_waited = new AtomicLong();
+    private final AtomicLong m_totalWaitNanos = new AtomicLong();
+    private final AtomicLong m_maxWaitNanos = new AtomicLong();
+
+    private volatile AdmissionMode m_mode = AdmissionMode.BLOCK;
+
+    /**
+     * Sets the maximum number of statements in-flight, across all entity types.
+     *
+     * @param limit
+     *            in-flight maximum, or {@link #UNLIMITED}
+     */
+    public void setMaxInFlight(int limit) {
+        checkArgument(limit >= 0, "limit must be positive (or UNLIMITED)");
+        m_global.setLimit(limit);
+    }
+
+    /**
+     * Sets the maximum number of statements in-flight for a single entity type. Applies in addition
+     * to the global limit.
+     *
+     * @param type
+     *            entity class
+     * @param limit
+     *            in-flight maximum, or {@link #UNLIMITED}
+     */
+    public void setMaxInFlight(Class<?> type, int limit) {
+        checkNotNull(type, "type argument");
+        checkArgument(limit >= 0, "limit must be positive (or UNLIMITED)");
+        getGate(type).setLimit(limit);
+    }
+
+    public int getMaxInFlight() {
+        return m_global.m_limit;
+    }
+
+    public int getMaxInFlight(Class<?> type) {
+        Gate gate = m_perType.get(type);
+        return (gate != null) ? gate.m_limit : UNLIMITED;
+    }
+
+    public void setAdmissionMode(AdmissionMode mode) {
+        m_mode = checkNotNull(mode, "mode argument");
+    }
+
+    public AdmissionMode getAdmissionMode() {
+        return m_mode;
+    }
+
+    /** Number of statements currently in-flight. */
+    public int getInFlight() {
+        return m_global.m_inFlight;
+    }
+
+    /** Number of statements currently in-flight for the given entity type. */
+    public int getInFlight(Class<?> type) {
+        Gate gate = m_perType.get(type);
+        return (gate != null) ? gate.m_inFlight : 0;
+    }
+
+    /** Total number of statements admitted. */
+    public long getAdmitted() {
+        return m_admitted.get();
+    }
+
+    /** Total number of statements rejected (only ever non-zero in {@link AdmissionMode#FAIL_FAST}). */
+    public long getRejected() {
+        return m_rejected.get();
+    }
+
+    /** Total number of statements that had to wait for admission. */
+    public long getWaited() {
+        return m_waited.get();
+    }
+
+    /** Cumulative time spent by statements waiting for admission. */
+    public long getTotalWaitTime(TimeUnit unit) {
+        return unit.convert(m_totalWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /** Longest time any one statement spent waiting for admission. */
+    public long getMaxWaitTime(TimeUnit unit) {
+        return unit.convert(m_maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /** Mean time spent waiting for admission, of those statements that had to wait. */
+    public long getMeanWaitTime(TimeUnit unit) {
+        long waited = m_waited.get();
+        return (waited != 0) ? unit.convert(m_totalWaitNanos.get() / waited, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    /**
+     * Admits a statement for the given entity type, (waiting, or failing, according to the
+     * admission mode).
+     *
+     * @param type
+     *            entity class the statement belongs to
+     * @return a permit that must be released when the statement completes
+     * @throws RequestRejectedException
+     *             if the statement is refused admission
+     */
+    Permit acquire(Class<?> type) {
+
+        List<Gate> gates = Lists.newArrayListWithCapacity(2);
+        Gate typeGate = getGate(type);
+
+        // Per-type gates are always entered before the global one, (consistent ordering).
+        try {
+            enter(typeGate, type);
+            gates.add(typeGate);
+
+            enter(m_global, type);
+            gates.add(m_global);
+        }
+        catch (RuntimeException e) {
+            new Permit(gates).release();
+            throw e;
+        }
+
+        m_admitted.incrementAndGet();
+
+        return new Permit(gates);
+    }
+
+    /**
+     * Admits a statement for the given entity type only if that is possible without waiting,
+     * regardless of admission mode. Refusals are not counted as rejections.
+     *
+     * @param type
+     *            entity class the statement belongs to
+     * @return a permit that must be released when the statement completes, or null
+     */
+    Permit tryAcquire(Class<?> type) {
+
+        Gate typeGate = getGate(type);
+
+        if (!typeGate.tryEnter()) {
+            return null;
+        }
+
+        if (!m_global.tryEnter()) {
+            typeGate.exit();
+            return null;
+        }
+
+        m_admitted.incrementAndGet();
+
+        return new Permit(Lists.newArrayList(typeGate, m_global));
+    }
+
+    private void enter(Gate gate, Class<?> type) {
+
+        if (gate.tryEnter()) {
+            return;
+        }
+
+        if (m_mode.equals(AdmissionMode.FAIL_FAST)) {
+            m_rejected.incrementAndGet();
+            throw new RequestRejectedException(
+                    format("in-flight limit reached (%s); request for %s rejected", gate.m_limit, type.getSimpleName()));
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            gate.enter();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LucidityException("interrupted while awaiting admission", e);
+        }
+
+        recordWait(System.nanoTime() - start);
+
+    }
+
+    private void recordWait(long nanos) {
+        m_waited.incrementAndGet();
+        m_totalWaitNanos.addAndGet(nanos);
+
+        long max;
+        while ((max = m_maxWaitNanos.get()) < nanos) {
+            if (m_maxWaitNanos.compareAndSet(max, nanos)) break;
+        }
+    }
+
+    private Gate getGate(Class<?> type) {
+        Gate gate = m_perType.get(type);
+
+        if (gate == null) {
+            Gate existing = m_perType.putIfAbsent(type, gate = new Gate(UNLIMITED));
+            if (existing != null) gate = existing;
+        }
+
+        return gate;
+    }
+
+    @Override
+    public String toString() {
+        return format(
+                "%s[inFlight=%d, maxInFlight=%d, mode=%s, admitted=%d, rejected=%d]",
+                getClass().getSimpleName(),
+                getInFlight(),
+                getMaxInFlight(),
+                getAdmissionMode(),
+                getAdmitted(),
+                getRejected());
+    }
+
+}
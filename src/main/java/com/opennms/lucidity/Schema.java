@@ -28,24 +28,37 @@ import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import com.datastax.driver.core.DataType;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.opennms.lucidity.annotations.CascadeType;
 import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Counter;
+import com.opennms.lucidity.annotations.CompositeIndex;
+import com.opennms.lucidity.annotations.CompositeIndexes;
+import com.opennms.lucidity.annotations.Embedded;
 import com.opennms.lucidity.annotations.EmbeddedCollection;
 import com.opennms.lucidity.annotations.Entity;
 import com.opennms.lucidity.annotations.Id;
 import com.opennms.lucidity.annotations.Index;
+import com.opennms.lucidity.annotations.IndexType;
 import com.opennms.lucidity.annotations.OneToMany;
+import com.opennms.lucidity.annotations.RelationStorage;
 import com.opennms.lucidity.annotations.Table;
 import com.opennms.lucidity.annotations.UpdateStrategy;
 
@@ -76,6 +89,30 @@ class Schema {
             return m_schema;
         }
 
+        RelationStorage getStorage() {
+            return m_field.getAnnotation(OneToMany.class).storage();
+        }
+
+        /** True if the related IDs are stored in a column of the owning entity's row. */
+        boolean isIdSet() {
+            return getStorage().equals(RelationStorage.ID_SET);
+        }
+
+        /** True if related entities are also mapped back to their owner, (see {@link OneToMany#reversed()}). */
+        boolean isReversed() {
+            return m_field.getAnnotation(OneToMany.class).reversed();
+        }
+
+        /** True if the given operation cascades to related entities, (see {@link OneToMany#cascade()}). */
+        boolean cascades(CascadeType type) {
+            return Arrays.asList(m_field.getAnnotation(OneToMany.class).cascade()).contains(type);
+        }
+
+        /** Name of the column of related IDs, (see {@link #isIdSet()}). */
+        String getColumnName() {
+            return relationColumnName(m_schema.getTableName());
+        }
+
         Collection<?> getValue(Object obj) {
             return (Collection<?>)Util.getFieldValue(m_field, obj);
         }
@@ -86,6 +123,162 @@ class Schema {
 
     }
 
+    static class EmbeddedSpec {
+        private final String m_name;
+        private final Field m_field;
+        private final Class<?> m_type;
+        private final Map<String, ColumnSpec> m_columns;
+
+        EmbeddedSpec(String name, Field f, Class<?> type, Map<String, ColumnSpec> columns) {
+            m_name = name;
+            m_field = f;
+            m_type = type;
+            m_columns = columns;
+        }
+
+        String getName() {
+            return m_name;
+        }
+
+        /** Class of the embedded objects. */
+        Class<?> getType() {
+            return m_type;
+        }
+
+        Collection<?> getValue(Object obj) {
+            return (Collection<?>)Util.getFieldValue(m_field, obj);
+        }
+
+        void setValue(Object obj, Collection<?> value) {
+            Util.setFieldValue(m_field, obj, value);
+        }
+
+        /** Serializes embedded objects, (null if the collection is). */
+        Set<ByteBuffer> encode(Collection<?> objects) {
+
+            if (objects == null) {
+                return null;
+            }
+
+            Set<ByteBuffer> encoded = Sets.newHashSet();
+
+            for (Object obj : objects) {
+                encoded.add(encode(obj));
+            }
+
+            return encoded;
+        }
+
+        /**
+         * Serializes an embedded object as a sequence of (name, value) pairs, in order of name;
+         * Names are prefixed by a short length, values by an int length, (-1 for null).
+         */
+        private ByteBuffer encode(Object obj) {
+            checkNotNull(obj, format("null element in embedded collection %s", getName()));
+
+            List<byte[]> names = Lists.newArrayList();
+            List<ByteBuffer> values = Lists.newArrayList();
+            int size = 0;
+
+            for (ColumnSpec colSpec : m_columns.values()) {
+                Object value = colSpec.getValue(obj);
+                byte[] name = colSpec.getName().getBytes(Charsets.UTF_8);
+                ByteBuffer bytes = (value != null) ? DATA_TYPES.get(colSpec.getType()).serialize(value) : null;
+
+                names.add(name);
+                values.add(bytes);
+                size += 2 + name.length + 4 + ((bytes != null) ? bytes.remaining() : 0);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+
+            for (int i = 0; i < names.size(); i++) {
+                buffer.putShort((short) names.get(i).length).put(names.get(i));
+
+                if (values.get(i) == null) {
+                    buffer.putInt(-1);
+                }
+                else {
+                    buffer.putInt(values.get(i).remaining()).put(values.get(i).duplicate());
+                }
+            }
+
+            buffer.flip();
+
+            return buffer;
+        }
+
+        /** Deserializes embedded objects into a set. */
+        Collection<Object> decode(Set<ByteBuffer> encoded) {
+            Collection<Object> objects = Sets.newHashSet();
+
+            for (ByteBuffer bytes : encoded) {
+                objects.add(decode(bytes.duplicate()));
+            }
+
+            return objects;
+        }
+
+        private Object decode(ByteBuffer buffer) {
+            Object obj = Util.newInstance(m_type);
+
+            while (buffer.hasRemaining()) {
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+
+                int length = buffer.getInt();
+
+                if (length < 0) {
+                    continue;
+                }
+
+                ByteBuffer value = buffer.slice();
+                value.limit(length);
+                buffer.position(buffer.position() + length);
+
+                // Fields since removed from the class are skipped, those since added left unset.
+                ColumnSpec colSpec = m_columns.get(new String(name, Charsets.UTF_8));
+
+                if (colSpec != null) {
+                    colSpec.setValue(obj, DATA_TYPES.get(colSpec.getType()).deserialize(value));
+                }
+            }
+
+            return obj;
+        }
+
+    }
+
+    static class CompositeIndexSpec {
+        private final String m_tableName;
+        private final List<ColumnSpec> m_columns;
+
+        CompositeIndexSpec(String tableName, List<ColumnSpec> columns) {
+            m_tableName = tableName;
+            m_columns = columns;
+        }
+
+        String getTableName() {
+            return m_tableName;
+        }
+
+        List<ColumnSpec> getColumns() {
+            return m_columns;
+        }
+
+        /** True if this index is over exactly the named columns (in any order). */
+        boolean covers(Set<String> columnNames) {
+            if (columnNames.size() != m_columns.size()) {
+                return false;
+            }
+            for (ColumnSpec colSpec : m_columns) {
+                if (!columnNames.contains(colSpec.getName())) return false;
+            }
+            return true;
+        }
+
+    }
+
     static class IdSpec {
         private final String m_name;
         private final Field m_field;
@@ -122,10 +315,99 @@ class Schema {
             return m_field.isAnnotationPresent(INDEX);
         }
 
+        IndexType getIndexType() {
+            checkState(m_field.isAnnotationPresent(INDEX), "Not indexed.");
+            return m_field.getAnnotation(Index.class).type();
+        }
+
+        int getIndexBuckets() {
+            checkState(m_field.isAnnotationPresent(INDEX), "Not indexed.");
+            return m_field.getAnnotation(Index.class).buckets();
+        }
+
+        /** Width of the periods an ordered index is partitioned by, (or 0, for none). */
+        long getIndexPeriod() {
+            checkState(m_field.isAnnotationPresent(INDEX), "Not indexed.");
+            return m_field.getAnnotation(Index.class).period();
+        }
+
+        boolean isIndexPeriodic() {
+            return isIndexed() && getIndexPeriod() > 0;
+        }
+
+        /** The type of the values indexed; That of the column, or of a collection's elements (or keys). */
+        Type getIndexedType() {
+            checkState(m_field.isAnnotationPresent(INDEX), "Not indexed.");
+
+            if (!isCollection()) {
+                return getType();
+            }
+
+            Type[] types = getParameterizedTypes();
+            return (getType().equals(Map.class) && getIndexType().equals(IndexType.ELEMENTS)) ? types[1] : types[0];
+        }
+
+        /**
+         * The indexed values of a column value; The value itself, or the elements (or keys) of a
+         * collection. Never contains null.
+         */
+        Set<?> getIndexedValues(Object value) {
+            checkState(m_field.isAnnotationPresent(INDEX), "Not indexed.");
+
+            if (value == null) {
+                return Collections.emptySet();
+            }
+            else if (!isCollection()) {
+                return Collections.singleton(value);
+            }
+            else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                return getIndexType().equals(IndexType.KEYS) ? map.keySet() : Sets.newHashSet(map.values());
+            }
+            else {
+                return (Set<?>) value;
+            }
+        }
+
+        int getIndexShards() {
+            checkState(m_field.isAnnotationPresent(INDEX), "Not indexed.");
+            return m_field.getAnnotation(Index.class).shards();
+        }
+
+        /** True if each indexed value is spread across more than one partition. */
+        boolean isIndexSharded() {
+            return isIndexed() && getIndexShards() > 1;
+        }
+
+        /** True if a count of the entities with each indexed value is kept. */
+        boolean isIndexCounted() {
+            return isIndexed() && m_field.getAnnotation(Index.class).counted();
+        }
+
+        /** Names of the columns stored in the index (in addition to the entity ID). */
+        String[] getCoveredNames() {
+            checkState(m_field.isAnnotationPresent(INDEX), "Not indexed.");
+            return m_field.getAnnotation(Index.class).covering();
+        }
+
+        /** True if indexed using a table that must be written along with the entity. */
+        boolean hasIndexTable() {
+            return isIndexed() && !getIndexType().equals(IndexType.NATIVE);
+        }
+
         boolean isCollection() {
             return m_field.isAnnotationPresent(COLLECTION);
         }
 
+        /**
+         * True if changes are recorded by the collection itself (see {@link TrackedCollections}),
+         * rather than diffed against a copy; Indexed collections are diffed, to find the values
+         * (un)indexed.
+         */
+        boolean isChangeRecorded() {
+            return isCollection() && !hasIndexTable();
+        }
+
         UpdateStrategy getCollectionUpdateStrategy() {
             checkState(m_field.isAnnotationPresent(COLLECTION), "Not a collection.");
             return m_field.getAnnotation(EmbeddedCollection.class).updateStrategy();
@@ -140,6 +422,10 @@ class Schema {
             return m_name;
         }
 
+        String getFieldName() {
+            return m_field.getName();
+        }
+
         Type getType() {
             return m_field.getType();
         }
@@ -160,10 +446,21 @@ class Schema {
     static final Class<? extends Annotation> INDEX = Index.class;
     static final Class<? extends Annotation> TABLE = Table.class;
     static final Class<? extends Annotation> COLLECTION = EmbeddedCollection.class;
+    static final Class<? extends Annotation> EMBEDDED = Embedded.class;
+    static final Class<? extends Annotation> COUNTER = Counter.class;
+    static final Class<? extends Annotation> COMPOSITE_INDEX = CompositeIndex.class;
+    static final Class<? extends Annotation> COMPOSITE_INDEXES = CompositeIndexes.class;
     
     static final String DEFAULT_ID_NAME = "id";
+    static final String BUCKET_COLUMN = "bucket";
+    static final String PERIOD_COLUMN = "period";
+    static final String SHARD_COLUMN = "shard";
+    static final String COUNT_COLUMN = "total";
+    static final Set<Class<?>> ORDERED_TYPES = Sets.<Class<?>>newHashSet(
+            Integer.TYPE, Integer.class, Long.TYPE, Long.class, Double.TYPE, Double.class, Date.class);
     static final Set<Class<?>> COLLECTION_TYPES = Sets.<Class<?>>newHashSet(Map.class, Set.class, List.class);
     static final Map<Type, String> CQL_TYPES = Maps.newHashMap();
+    static final Map<Type, DataType> DATA_TYPES = Maps.newHashMap();
 
     static {
         CQL_TYPES.put(Boolean.TYPE, "boolean");
@@ -185,6 +482,23 @@ class Schema {
         CQL_TYPES.put(Map.class, "map");
         CQL_TYPES.put(Set.class, "set");
         CQL_TYPES.put(List.class, "list");
+
+        DATA_TYPES.put(Boolean.TYPE, DataType.cboolean());
+        DATA_TYPES.put(Boolean.class, DataType.cboolean());
+        DATA_TYPES.put(BigDecimal.class, DataType.decimal());
+        DATA_TYPES.put(BigInteger.class, DataType.varint());
+        DATA_TYPES.put(Date.class, DataType.timestamp());
+        DATA_TYPES.put(Double.TYPE, DataType.cdouble());
+        DATA_TYPES.put(Double.class, DataType.cdouble());
+        DATA_TYPES.put(Float.TYPE, DataType.cfloat());
+        DATA_TYPES.put(Float.class, DataType.cfloat());
+        DATA_TYPES.put(InetAddress.class, DataType.inet());
+        DATA_TYPES.put(Integer.TYPE, DataType.cint());
+        DATA_TYPES.put(Integer.class, DataType.cint());
+        DATA_TYPES.put(Long.TYPE, DataType.bigint());
+        DATA_TYPES.put(Long.class, DataType.bigint());
+        DATA_TYPES.put(String.class, DataType.text());
+        DATA_TYPES.put(UUID.class, DataType.uuid());
     }
 
     private final Class<?> m_type;
@@ -192,13 +506,21 @@ class Schema {
     private final IdSpec m_idSpec;
     private final Map<String, ColumnSpec> m_columns;
     private final Collection<OneToManySpec> m_oneToManysNg;
+    private final Collection<EmbeddedSpec> m_embeddeds;
+    private final Map<String, ColumnSpec> m_counters;
+    private final Collection<CompositeIndexSpec> m_compositeIndexes;
+    private final int m_ttl;
 
-    Schema(Class<?> type, String tableName, IdSpec idSpec, Map<String, ColumnSpec> columns, Collection<OneToManySpec> oneToManysNg) {
+    Schema(Class<?> type, String tableName, IdSpec idSpec, Map<String, ColumnSpec> columns, Collection<OneToManySpec> oneToManysNg, Collection<EmbeddedSpec> embeddeds, Map<String, ColumnSpec> counters, Collection<CompositeIndexSpec> compositeIndexes, int ttl) {
         m_type = type;
         m_tableName = tableName;
+        m_ttl = ttl;
         m_idSpec = idSpec;
         m_columns = columns;
         m_oneToManysNg = oneToManysNg;
+        m_embeddeds = embeddeds;
+        m_counters = counters;
+        m_compositeIndexes = compositeIndexes;
     }
 
     Class<?> getObjectType() {
@@ -213,6 +535,24 @@ class Schema {
         return m_idSpec;
     }
 
+    /** Default time-to-live, in seconds, (0 for none). */
+    int getTTL() {
+        return m_ttl;
+    }
+
+    /** True if the entity can be written with a time-to-live; Counters can't expire. */
+    boolean isExpirable() {
+        if (!m_counters.isEmpty()) {
+            return false;
+        }
+
+        for (ColumnSpec colSpec : getColumns()) {
+            if (colSpec.isIndexCounted()) return false;
+        }
+
+        return true;
+    }
+
     Collection<ColumnSpec> getColumns() {
         return m_columns.values();
     }
@@ -221,6 +561,54 @@ class Schema {
         return m_oneToManysNg;
     }
 
+    /** Returns the named one-to-many relation, or null if there is no such relation. */
+    OneToManySpec getOneToMany(String name) {
+        for (OneToManySpec relSpec : m_oneToManysNg) {
+            if (relSpec.getName().equals(name)) return relSpec;
+        }
+        return null;
+    }
+
+    Collection<EmbeddedSpec> getEmbeddeds() {
+        return m_embeddeds;
+    }
+
+    /** Counter columns, (stored in the counter table, see {@link #counterTableName(String)}). */
+    Collection<ColumnSpec> getCounters() {
+        return m_counters.values();
+    }
+
+    /** Returns the named counter column, or null if there is no such counter. */
+    ColumnSpec getCounter(String columnName) {
+        return m_counters.get(columnName);
+    }
+
+    /** Returns the columns stored in (covered by) a column's index, if any. */
+    List<ColumnSpec> getCoveredColumns(ColumnSpec colSpec) {
+        List<ColumnSpec> covered = Lists.newArrayList();
+        for (String name : colSpec.getCoveredNames()) {
+            covered.add(m_columns.get(name));
+        }
+        return covered;
+    }
+
+    Collection<CompositeIndexSpec> getCompositeIndexes() {
+        return m_compositeIndexes;
+    }
+
+    /** Returns the composite index over exactly the named columns, or null if there is none. */
+    CompositeIndexSpec getCompositeIndex(Set<String> columnNames) {
+        for (CompositeIndexSpec indexSpec : m_compositeIndexes) {
+            if (indexSpec.covers(columnNames)) return indexSpec;
+        }
+        return null;
+    }
+
+    /** Returns the named column, or null if there is no such column. */
+    ColumnSpec getColumn(String columnName) {
+        return m_columns.get(columnName);
+    }
+
     boolean isIndexed(String columnName) {
         if (!m_columns.containsKey(columnName)) {
             return false;
@@ -260,24 +648,137 @@ class Schema {
             sb.append(", ").append(colSpec.getName()).append(" ").append(getCassandraTypeDDL(colSpec));
         }
 
+        for (OneToManySpec relSpec : getOneToManys()) {
+            if (relSpec.isIdSet()) {
+                sb.append(", ").append(relSpec.getColumnName()).append(" set<uuid>");
+            }
+        }
+
+        for (EmbeddedSpec embeddedSpec : getEmbeddeds()) {
+            sb.append(", ").append(embeddedSpec.getName()).append(" set<blob>");
+        }
+
         sb.append(");").append(System.lineSeparator());
+
+        if (!m_counters.isEmpty()) {
+            sb.append("CREATE TABLE ").append(counterTableName(getTableName())).append(" (").append(getID().getName()).append(" uuid PRIMARY KEY");
+
+            for (ColumnSpec colSpec : getCounters()) {
+                sb.append(", ").append(colSpec.getName()).append(" counter");
+            }
+
+            sb.append(");").append(System.lineSeparator());
+        }
         
         for (ColumnSpec colSpec : getColumns()) {
             String columnName = colSpec.getName();
             
-            if (colSpec.isIndexed()) {
+            if (colSpec.isIndexed() && colSpec.getIndexType().equals(IndexType.NATIVE)) {
+                sb.append(format(
+                        "CREATE INDEX %s ON %s (%s);%n",
+                        indexTableName(getTableName(), columnName),
+                        getTableName(),
+                        columnName));
+            }
+            else if (colSpec.isIndexPeriodic()) {
                 sb.append(format(
-                        "CREATE TABLE %s (%s %s, %s uuid, PRIMARY KEY(%s, %s));%n",
+                        "CREATE TABLE %s (%s int, %s bigint, %s %s, %s uuid%s, PRIMARY KEY((%s, %s), %s, %s));%n",
                         indexTableName(getTableName(), columnName),
+                        BUCKET_COLUMN,
+                        PERIOD_COLUMN,
                         columnName,
                         getCassandraTypeDDL(colSpec),
                         joinColumnName(getTableName()),
+                        getCoveredColumnsDDL(colSpec),
+                        BUCKET_COLUMN,
+                        PERIOD_COLUMN,
                         columnName,
                         joinColumnName(getTableName())));
             }
+            else if (colSpec.isIndexed() && colSpec.getIndexType().equals(IndexType.ORDERED)) {
+                sb.append(format(
+                        "CREATE TABLE %s (%s int, %s %s, %s uuid%s, PRIMARY KEY(%s, %s, %s));%n",
+                        indexTableName(getTableName(), columnName),
+                        BUCKET_COLUMN,
+                        columnName,
+                        getCassandraTypeDDL(colSpec),
+                        joinColumnName(getTableName()),
+                        getCoveredColumnsDDL(colSpec),
+                        BUCKET_COLUMN,
+                        columnName,
+                        joinColumnName(getTableName())));
+            }
+            else if (colSpec.isIndexSharded()) {
+                sb.append(format(
+                        "CREATE TABLE %s (%s %s, %s int, %s uuid%s, PRIMARY KEY((%s, %s), %s));%n",
+                        indexTableName(getTableName(), columnName),
+                        columnName,
+                        CQL_TYPES.get(colSpec.getIndexedType()),
+                        SHARD_COLUMN,
+                        joinColumnName(getTableName()),
+                        getCoveredColumnsDDL(colSpec),
+                        columnName,
+                        SHARD_COLUMN,
+                        joinColumnName(getTableName())));
+            }
+            else if (colSpec.isIndexed()) {
+                sb.append(format(
+                        "CREATE TABLE %s (%s %s, %s uuid%s, PRIMARY KEY(%s, %s));%n",
+                        indexTableName(getTableName(), columnName),
+                        columnName,
+                        CQL_TYPES.get(colSpec.getIndexedType()),
+                        joinColumnName(getTableName()),
+                        getCoveredColumnsDDL(colSpec),
+                        columnName,
+                        joinColumnName(getTableName())));
+            }
+        }
+
+        for (ColumnSpec colSpec : getColumns()) {
+            if (colSpec.isIndexCounted()) {
+                sb.append(format(
+                        "CREATE TABLE %s (%s %s PRIMARY KEY, %s counter);%n",
+                        indexCountTableName(getTableName(), colSpec.getName()),
+                        colSpec.getName(),
+                        CQL_TYPES.get(colSpec.getIndexedType()),
+                        COUNT_COLUMN));
+            }
+        }
+
+        for (CompositeIndexSpec indexSpec : getCompositeIndexes()) {
+            List<String> names = Lists.newArrayList();
+            List<String> definitions = Lists.newArrayList();
+
+            for (ColumnSpec colSpec : indexSpec.getColumns()) {
+                names.add(colSpec.getName());
+                definitions.add(format("%s %s", colSpec.getName(), getCassandraTypeDDL(colSpec)));
+            }
+
+            sb.append(format(
+                    "CREATE TABLE %s (%s, %s uuid, PRIMARY KEY((%s), %s));%n",
+                    indexSpec.getTableName(),
+                    Joiner.on(", ").join(definitions),
+                    joinColumnName(getTableName()),
+                    Joiner.on(", ").join(names),
+                    joinColumnName(getTableName())));
         }
 
         for (OneToManySpec relSpec : getOneToManys()) {
+            if (relSpec.isReversed()) {
+                Schema s = relSpec.getSchema();
+                sb.append(format(
+                        "CREATE TABLE %s (%s uuid, %s uuid, PRIMARY KEY(%s, %s));%n",
+                        reverseJoinTableName(getTableName(), s.getTableName()),
+                        joinColumnName(s.getTableName()),
+                        joinColumnName(getTableName()),
+                        joinColumnName(s.getTableName()),
+                        joinColumnName(getTableName())));
+            }
+
+            if (relSpec.isIdSet()) {
+                continue;
+            }
+
             Schema s = relSpec.getSchema();
             sb.append(format(
                     "CREATE TABLE %s (%s uuid, %s uuid, PRIMARY KEY(%s, %s));%n",
@@ -291,6 +792,14 @@ class Schema {
         return sb.toString();
     }
 
+    private String getCoveredColumnsDDL(ColumnSpec colSpec) {
+        StringBuilder sb = new StringBuilder();
+        for (ColumnSpec covered : getCoveredColumns(colSpec)) {
+            sb.append(", ").append(covered.getName()).append(" ").append(getCassandraTypeDDL(covered));
+        }
+        return sb.toString();
+    }
+
     @Override
     public String toString() {
         return format("%s[tableName=%s]", getClass().getSimpleName(), getTableName());
@@ -304,18 +813,24 @@ class Schema {
         }
 
         String tableName = cls.getSimpleName();
+        int ttl = 0;
 
         if (cls.isAnnotationPresent(TABLE)) {
             Table table = cls.getAnnotation(Table.class);
             if (!table.name().isEmpty()) {
                 tableName = table.name();
             }
+            ttl = table.ttl();
         }
 
+        checkArgument(ttl >= 0, format("negative ttl (%s)", tableName));
+
         String idName = null;
         Field idField = null;
         Map<String, ColumnSpec> columns = Maps.newHashMap();
         Collection<OneToManySpec> oneToManys = Lists.newArrayList();
+        Collection<EmbeddedSpec> embeddeds = Lists.newArrayList();
+        Map<String, ColumnSpec> counters = Maps.newHashMap();
 
         // Fields
         for (Field f : cls.getDeclaredFields()) {
@@ -341,18 +856,21 @@ class Schema {
                         isCassandraCollection(f.getType()),
                         format("%s is an invalid type for @%s", f.getType(), COLLECTION.getCanonicalName()));
 
-                if (f.getType().equals(List.class)) {
-                    EmbeddedCollection c = f.getAnnotation(EmbeddedCollection.class);
-                    checkArgument(
-                            !c.updateStrategy().equals(UpdateStrategy.ELEMENT),
-                            format("unsupported update strategy %s for collection of type List", UpdateStrategy.ELEMENT));
-                }
-
                 String name = getColumnSchemaName(f);
 
-                checkArgument(
-                        !f.isAnnotationPresent(INDEX),
-                        format("Cannot use @%s annotation on collection %s", INDEX.getCanonicalName(), name));
+                if (f.isAnnotationPresent(INDEX)) {
+                    IndexType indexType = f.getAnnotation(Index.class).type();
+
+                    checkArgument(
+                            indexType.equals(IndexType.ELEMENTS) || indexType.equals(IndexType.KEYS),
+                            format("Cannot use @%s(type=%s) annotation on collection %s", INDEX.getCanonicalName(), indexType, name));
+                    checkArgument(
+                            !f.getType().equals(List.class),
+                            format("Cannot use @%s annotation on list %s", INDEX.getCanonicalName(), name));
+                    checkArgument(
+                            !indexType.equals(IndexType.KEYS) || f.getType().equals(Map.class),
+                            format("%s index requires a map (%s)", IndexType.KEYS, name));
+                }
 
                 for (Type t : Util.getParameterizedTypes(f)) {
                     checkArgument(
@@ -362,6 +880,37 @@ class Schema {
 
                 columns.put(name, new ColumnSpec(name, f));
 
+            }
+            // Embedded annotated fields
+            else if (f.isAnnotationPresent(EMBEDDED)) {
+                f.setAccessible(true);
+
+                String name = getColumnSchemaName(f);
+
+                // Stored as a set; A list would come back reordered, and without its duplicates.
+                checkArgument(
+                        f.getType().equals(Set.class),
+                        format("@%s field %s must be a Set", EMBEDDED.getCanonicalName(), name));
+
+                Type type = ((ParameterizedType)f.getGenericType()).getActualTypeArguments()[0];
+                embeddeds.add(embeddedFromClass(name, f, (Class<?>)type));
+
+            }
+            // Counter annotated fields
+            else if (f.isAnnotationPresent(COUNTER)) {
+                f.setAccessible(true);
+
+                String name = getColumnSchemaName(f);
+
+                checkArgument(
+                        f.getType().equals(Long.TYPE) || f.getType().equals(Long.class),
+                        format("@%s field %s must be a long", COUNTER.getCanonicalName(), name));
+                checkArgument(
+                        !f.isAnnotationPresent(INDEX),
+                        format("Cannot use @%s annotation on counter %s", INDEX.getCanonicalName(), name));
+
+                counters.put(name, new ColumnSpec(name, f));
+
             }
             // Column annotated fields
             else if (f.isAnnotationPresent(COLUMN)) {
@@ -375,6 +924,25 @@ class Schema {
 
                 checkArgument(isCassandraType(f.getType()), format("invalid type: %s (%s)", f.getType(), name));
 
+                if (f.isAnnotationPresent(INDEX)) {
+                    Index index = f.getAnnotation(Index.class);
+
+                    checkArgument(
+                            !index.type().equals(IndexType.ELEMENTS) && !index.type().equals(IndexType.KEYS),
+                            format("%s index requires a collection (%s)", index.type(), name));
+
+                    if (index.type().equals(IndexType.ORDERED)) {
+                        checkArgument(
+                                ORDERED_TYPES.contains(f.getType()),
+                                format("%s is an invalid type for %s index (%s)", f.getType(), IndexType.ORDERED, name));
+                        checkArgument(index.buckets() > 0, format("bucket count must be positive (%s)", name));
+                        checkArgument(index.period() >= 0, format("period must be positive (%s)", name));
+                    }
+                    else {
+                        checkArgument(index.period() == 0, format("only %s indexes are partitioned by period (%s)", IndexType.ORDERED, name));
+                    }
+                }
+
                 columns.put(name, new ColumnSpec(name, f));
 
             }
@@ -388,7 +956,15 @@ class Schema {
                 }
 
                 Type type = ((ParameterizedType)f.getGenericType()).getActualTypeArguments()[0];
-                oneToManys.add(new OneToManySpec(f, fromClass((Class<?>)type)));
+                OneToManySpec relSpec = new OneToManySpec(f, fromClass((Class<?>)type));
+
+                for (OneToManySpec other : oneToManys) {
+                    checkArgument(
+                            !(relSpec.isIdSet() && other.isIdSet()) || !relSpec.getColumnName().equals(other.getColumnName()),
+                            format("more than one %s relation to %s", RelationStorage.ID_SET, relSpec.getSchema().getTableName()));
+                }
+
+                oneToManys.add(relSpec);
 
             }
 
@@ -405,17 +981,200 @@ class Schema {
                     String.format("At least one non-Id field must be annotated with @%s", COLUMN.getCanonicalName()));
         }
 
-        return new Schema(cls, tableName, new IdSpec(idName, idField), columns, oneToManys);
+        // Relation ID and embedded columns
+        Set<String> names = Sets.newHashSet(columns.keySet());
+
+        for (OneToManySpec relSpec : oneToManys) {
+            checkArgument(
+                    !relSpec.isIdSet() || names.add(relSpec.getColumnName()),
+                    format("relation column %s collides with an existing column", relSpec.getColumnName()));
+        }
+
+        for (EmbeddedSpec embeddedSpec : embeddeds) {
+            checkArgument(
+                    names.add(embeddedSpec.getName()),
+                    format("embedded column %s collides with an existing column", embeddedSpec.getName()));
+        }
+
+        // Counters have a table of their own, but are tracked alongside the other columns.
+        for (String name : counters.keySet()) {
+            checkArgument(names.add(name), format("counter column %s collides with an existing column", name));
+        }
+
+        // Index options
+        for (ColumnSpec colSpec : columns.values()) {
+            if (colSpec.isIndexed()) {
+                checkCovering(colSpec, columns);
+                checkIndexOptions(colSpec);
+            }
+        }
+
+        // Composite indexes
+        List<CompositeIndex> indexes = Lists.newArrayList();
+        Collection<CompositeIndexSpec> compositeIndexes = Lists.newArrayList();
+
+        if (cls.isAnnotationPresent(COMPOSITE_INDEX)) {
+            indexes.add(cls.getAnnotation(CompositeIndex.class));
+        }
+
+        if (cls.isAnnotationPresent(COMPOSITE_INDEXES)) {
+            indexes.addAll(Arrays.asList(cls.getAnnotation(CompositeIndexes.class).value()));
+        }
+
+        for (CompositeIndex index : indexes) {
+            compositeIndexes.add(getCompositeIndexSpec(tableName, columns, index));
+        }
+
+        Schema schema = new Schema(cls, tableName, new IdSpec(idName, idField), columns, oneToManys, embeddeds, counters, compositeIndexes, ttl);
+
+        checkArgument(
+                ttl == 0 || schema.isExpirable(),
+                format("%s has a ttl, but counters (or counted indexes) cannot expire", tableName));
+
+        return schema;
+    }
+
+    private static EmbeddedSpec embeddedFromClass(String name, Field f, Class<?> cls) {
+
+        if (!Util.getNoArgConstructor(cls).isPresent()) {
+            throw new IllegalArgumentException(format("%s is missing nullary constructor.", cls.getCanonicalName()));
+        }
+
+        // Sorted, so that equal objects always serialize to equal values.
+        Map<String, ColumnSpec> columns = Maps.newTreeMap();
+
+        for (Field field : cls.getDeclaredFields()) {
+            if (!field.isAnnotationPresent(COLUMN)) {
+                continue;
+            }
+
+            field.setAccessible(true);
+
+            String columnName = getColumnSchemaName(field);
+
+            checkArgument(
+                    DATA_TYPES.containsKey(field.getType()),
+                    format("invalid type: %s (%s, embedded in %s)", field.getType(), columnName, name));
+            checkArgument(
+                    !field.isAnnotationPresent(INDEX),
+                    format("Cannot use @%s annotation on embedded field %s", INDEX.getCanonicalName(), columnName));
+
+            columns.put(columnName, new ColumnSpec(columnName, field));
+        }
+
+        checkArgument(
+                !columns.isEmpty(),
+                format("At least one field of %s must be annotated with @%s", cls.getCanonicalName(), COLUMN.getCanonicalName()));
+
+        return new EmbeddedSpec(name, f, cls, columns);
+    }
+
+    private static void checkIndexOptions(ColumnSpec colSpec) {
+
+        IndexType type = colSpec.getIndexType();
+
+        checkArgument(colSpec.getIndexShards() > 0, format("shard count must be positive (%s)", colSpec.getName()));
+        checkArgument(
+                colSpec.getIndexShards() == 1 || !(type.equals(IndexType.NATIVE) || type.equals(IndexType.ORDERED)),
+                format("%s index on %s cannot be sharded", type, colSpec.getName()));
+        checkArgument(
+                !colSpec.isIndexCounted() || !type.equals(IndexType.NATIVE),
+                format("%s index on %s cannot be counted", type, colSpec.getName()));
+    }
+
+    private static void checkCovering(ColumnSpec colSpec, Map<String, ColumnSpec> columns) {
+
+        String[] covered = colSpec.getCoveredNames();
+
+        if (covered.length == 0) {
+            return;
+        }
+
+        IndexType type = colSpec.getIndexType();
+
+        checkArgument(
+                type.equals(IndexType.INVERTED) || type.equals(IndexType.ORDERED),
+                format("%s index on %s cannot cover columns", type, colSpec.getName()));
+
+        Set<String> seen = Sets.newHashSet();
+
+        for (String name : covered) {
+            ColumnSpec c = columns.get(name);
+
+            checkArgument(c != null, format("non-existent column '%s' covered by index on %s", name, colSpec.getName()));
+            checkArgument(!c.isCollection(), format("Cannot cover collection %s in index on %s", name, colSpec.getName()));
+            checkArgument(c != colSpec, format("index on %s cannot cover itself", name));
+            checkArgument(seen.add(name), format("column '%s' repeated in covering index", name));
+        }
+    }
+
+    private static CompositeIndexSpec getCompositeIndexSpec(String tableName, Map<String, ColumnSpec> columns, CompositeIndex index) {
+
+        checkArgument(
+                index.columns().length > 1,
+                format("@%s requires two or more columns", COMPOSITE_INDEX.getCanonicalName()));
+
+        List<ColumnSpec> indexed = Lists.newArrayList();
+
+        for (String name : index.columns()) {
+            ColumnSpec colSpec = columns.get(name);
+
+            checkArgument(colSpec != null, format("non-existent column '%s' in composite index", name));
+            checkArgument(!colSpec.isCollection(), format("Cannot use collection %s in composite index", name));
+            checkArgument(!indexed.contains(colSpec), format("column '%s' repeated in composite index", name));
+
+            indexed.add(colSpec);
+        }
+
+        return new CompositeIndexSpec(indexTableName(tableName, Joiner.on("_").join(index.columns())), indexed);
     }
 
     static String joinColumnName(String tableName) {
         return format("%s_id", tableName);
     }
 
+    /** The bucket of an entity, (in an index spread across the given number of buckets). */
+    static int bucketOf(UUID id, int buckets) {
+        return (id.hashCode() & Integer.MAX_VALUE) % buckets;
+    }
+
+    /**
+     * The period of an ordered value, (the range of values of the given width it falls in); Periods
+     * are numbered in value order, from the period containing zero (or the epoch).
+     */
+    static long periodOf(Object value, long period) {
+
+        if (value instanceof Double) {
+            return (long) Math.floor((Double) value / period);
+        }
+
+        long number = (value instanceof Date) ? ((Date) value).getTime() : ((Number) value).longValue();
+
+        // Rounded down, (towards the lower period, for negative values).
+        return (number >= 0) ? number / period : -((-(number + 1)) / period) - 1;
+    }
+
     static String indexTableName(String tableName, String indexedName) {
         return format("%s_%s_idx", tableName, indexedName);
     }
 
+    static String indexCountTableName(String tableName, String indexedName) {
+        return format("%s_%s_count", tableName, indexedName);
+    }
+
+    /** Name of the table holding an entity's counter columns. */
+    static String counterTableName(String tableName) {
+        return format("%s_counters", tableName);
+    }
+
+    static String relationColumnName(String tableName) {
+        return format("%s_ids", tableName);
+    }
+
+    static String reverseJoinTableName(String table0, String table1) {
+        return format("%s_%s_rev", table0, table1);
+    }
+
     static String joinTableName(String table0, String table1) {
         return format("%s_%s", table0, table1);
     }
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+
+/**
+ * Speculative (hedged) execution of reads. When the first attempt at a read hasn't completed
+ * within a threshold, a second attempt is sent and whichever response arrives first wins. The
+ * threshold is either fixed, or derived from a percentile of the latencies observed so far.
+ * <p>
+ * Only reads are ever hedged; Writes are never sent more than once. Pass a policy to
+ * {@link CassandraEntityStoreFactory#setSpeculativeReadPolicy(SpeculativeReadPolicy)} to enable.
+ */
+public class SpeculativeReadPolicy {
+
+    /** Number of latency samples a percentile policy considers. */
+    static final int SAMPLE_WINDOW = 1024;
+
+    /** Samples needed before a percentile policy trusts its own measurements. */
+    static final int MIN_SAMPLES = 100;
+
+    /**
+     * One attempt at a read.
+     */
+    interface Attempt<V> {
+
+        /**
+         * Starts the attempt.
+         *
+         * @param speculative
+         *            true if this is the second (hedged) attempt
+         * @return a future result, or null if a speculative attempt could not be started
+         */
+        ListenableFuture<V> start(boolean speculative);
+
+    }
+
+    private final long m_delayNanos;
+    private final LatencyTracker m_tracker;
+    private final AtomicLong m_reads = new AtomicLong();
+    private final AtomicLong m_hedged = new AtomicLong();
+    private final AtomicLong m_hedgeWins = new AtomicLong();
+
+    private SpeculativeReadPolicy(long delayNanos, LatencyTracker tracker) {
+        m_delayNanos = delayNanos;
+        m_tracker = tracker;
+    }
+
+    /**
+     * Returns a policy that hedges any read not complete within a fixed delay.
+     *
+     * @param delay
+     *            time to wait before sending a second attempt
+     * @param unit
+     *            unit of the delay
+     * @return a speculative read policy
+     */
+    public static SpeculativeReadPolicy fixed(long delay, TimeUnit unit) {
+        checkArgument(delay >= 0, "delay must be positive");
+        checkNotNull(unit, "unit argument");
+        return new SpeculativeReadPolicy(unit.toNanos(delay), null);
+    }
+
+    /**
+     * Returns a policy that hedges any read that takes longer than the given percentile of recent
+     * read latencies (the 99th, for example). The initial delay is used until enough latencies have
+     * been observed.
+     *
+     * @param percentile
+     *            latency percentile, (0.0 - 100.0 exclusive)
+     * @param initialDelay
+     *            delay used until enough samples have been collected
+     * @param unit
+     *            unit of the initial delay
+     * @return a speculative read policy
+     */
+    public static SpeculativeReadPolicy percentile(double percentile, long initialDelay, TimeUnit unit) {
+        checkArgument(initialDelay >= 0, "initial delay must be positive");
+        checkNotNull(unit, "unit argument");
+        return new SpeculativeReadPolicy(unit.toNanos(initialDelay), new LatencyTracker(SAMPLE_WINDOW, percentile));
+    }
+
+    /** Current delay before a read is hedged. */
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(getDelayNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /** Total number of reads executed under this policy. */
+    public long getReads() {
+        return m_reads.get();
+    }
+
+    /** Number of reads for which a second attempt was sent. */
+    public long getHedged() {
+        return m_hedged.get();
+    }
+
+    /** Number of hedged reads answered by the second attempt. */
+    public long getHedgeWins() {
+        return m_hedgeWins.get();
+    }
+
+    private long getDelayNanos() {
+        if (m_tracker != null && m_tracker.size() >= MIN_SAMPLES) {
+            return m_tracker.getPercentile();
+        }
+        return m_delayNanos;
+    }
+
+    private void record(long start) {
+        if (m_tracker != null) {
+            m_tracker.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Executes a read, hedging it if the first attempt is slow.
+     *
+     * @param attempt
+     *            the read to execute
+     * @return the result of whichever attempt completed first
+     */
+    <V> V execute(Attempt<V> attempt) {
+
+        m_reads.incrementAndGet();
+
+        long start = System.nanoTime();
+        ListenableFuture<V> first = attempt.start(false);
+
+        try {
+            V result = Uninterruptibles.getUninterruptibly(first, getDelayNanos(), TimeUnit.NANOSECONDS);
+            record(start);
+            return result;
+        }
+        catch (TimeoutException e) {
+            // Too slow; Hedge.
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+
+        ListenableFuture<V> second = attempt.start(true);
+
+        if (second == null) {
+            V result = getResult(first);
+            record(start);
+            return result;
+        }
+
+        m_hedged.incrementAndGet();
+
+        final SettableFuture<V> winner = SettableFuture.create();
+        final AtomicInteger remaining = new AtomicInteger(2);
+
+        Futures.addCallback(first, newCallback(winner, remaining, false));
+        Futures.addCallback(second, newCallback(winner, remaining, true));
+
+        try {
+            V result = getResult(winner);
+            record(start);
+            return result;
+        }
+        finally {
+            first.cancel(false);
+            second.cancel(false);
+        }
+    }
+
+    private <V> FutureCallback<V> newCallback(final SettableFuture<V> winner, final AtomicInteger remaining, final boolean speculative) {
+        return new FutureCallback<V>() {
+
+            @Override
+            public void onSuccess(V result) {
+                // Count the win before publishing the result, (the caller may read stats immediately).
+                if (remaining.getAndSet(-1) > 0) {
+                    if (speculative) m_hedgeWins.incrementAndGet();
+                    winner.set(result);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // Only fail once both attempts have (and neither has succeeded).
+                if (remaining.decrementAndGet() == 0) {
+                    winner.setException(t);
+                }
+            }
+        };
+    }
+
+    private static <V> V getResult(ListenableFuture<V> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format(
+                "%s[delay=%dms, reads=%d, hedged=%d]",
+                getClass().getSimpleName(),
+                getDelay(TimeUnit.MILLISECONDS),
+                getReads(),
+                getHedged());
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import java.util.Locale;
+
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.querybuilder.Delete;
+import com.datastax.driver.core.querybuilder.Insert;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Select;
+import com.datastax.driver.core.querybuilder.Update;
+
+
+/**
+ * Starts query builder statements from cluster table metadata, when it is available. Statements
+ * built this way carry a routing key (computed by the driver from their partition key values),
+ * which lets a token-aware load balancing policy send them straight to a replica. When no metadata
+ * is available for a table, statements are built from its name and go without.
+ * <p>
+ * Table metadata is looked up for every statement, rather than kept; The driver replaces it as the
+ * schema changes, (a table created, or altered, by an index build or later DDL), and statements
+ * are built from whatever is current.
+ */
+class Tables {
+
+    private final Metadata m_metadata;
+    private final String m_keyspace;
+
+    /**
+     * @param metadata
+     *            cluster metadata, or null if unavailable
+     * @param keyspace
+     *            the keyspace tables belong to, or null if unknown
+     */
+    Tables(Metadata metadata, String keyspace) {
+        m_metadata = metadata;
+
+        // Generated DDL never quotes identifiers, so Cassandra stores them in lower case.
+        m_keyspace = (keyspace != null) ? keyspace.toLowerCase(Locale.ROOT) : null;
+    }
+
+    Insert insertInto(String table) {
+        TableMetadata meta = getTable(table);
+        return (meta != null) ? QueryBuilder.insertInto(meta) : QueryBuilder.insertInto(table);
+    }
+
+    Update update(String table) {
+        TableMetadata meta = getTable(table);
+        return (meta != null) ? QueryBuilder.update(meta) : QueryBuilder.update(table);
+    }
+
+    Select from(Select.Builder select, String table) {
+        TableMetadata meta = getTable(table);
+        return (meta != null) ? select.from(meta) : select.from(table);
+    }
+
+    Delete from(Delete.Builder delete, String table) {
+        TableMetadata meta = getTable(table);
+        return (meta != null) ? delete.from(meta) : delete.from(table);
+    }
+
+    /** Current metadata of a table, or null if there is none, (yet). */
+    TableMetadata getTable(String name) {
+
+        if (m_metadata == null || m_keyspace == null) {
+            return null;
+        }
+
+        KeyspaceMetadata keyspace = m_metadata.getKeyspace(m_keyspace);
+
+        return (keyspace != null) ? keyspace.getTable(name.toLowerCase(Locale.ROOT)) : null;
+    }
+
+}
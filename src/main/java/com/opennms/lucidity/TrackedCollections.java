@@ -0,0 +1,624 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.collect.ForwardingIterator;
+import com.google.common.collect.ForwardingList;
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.ForwardingMapEntry;
+import com.google.common.collect.ForwardingSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+
+/**
+ * Collections that record the changes made to them, installed in the collection fields of tracked
+ * instances. An update writes the recorded changes (adds and removes, puts, or appends) directly,
+ * rather than diffing the collection against a copy of its past state. Changes that can't be
+ * written element by element (a <code>clear()</code>, or a list element removed) mark the
+ * collection overwritten, and it is rewritten whole.
+ * <p>
+ * Each change is recorded atomically with the change itself, and an update drains the recorded
+ * changes atomically as it builds its statements, so a change made concurrently with an update is
+ * left for the next one. Beyond that, these collections are as thread-safe as the collections they
+ * wrap.
+ * <p>
+ * Instances are given a tracked copy of each collection, (of the same kind; a sorted set stays
+ * sorted, and a concurrent map concurrent), so that every change passes through the recorder. A
+ * reference kept to the collection the instance held before is detached from it; Changes made
+ * through it are never written, unless it is assigned to the field again, (and written whole).
+ */
+class TrackedCollections {
+
+    /** A collection that records the changes made to it since they were last drained. */
+    interface Tracked {
+
+        /** True if changed since last drained. */
+        boolean isChanged();
+
+        /** True if changed in a way that was not recorded, (the collection must be written whole). */
+        boolean isOverwritten();
+
+        /**
+         * Removes the changes recorded so far, (atomically), returning them in a detached
+         * collection. Its contents are a copy of this collection's if <code>whole</code> is true, or
+         * if this collection was overwritten; Otherwise it is empty.
+         */
+        Tracked drain(boolean whole);
+
+        /** Marks the collection overwritten, (changes drained, but never written, are written whole). */
+        void overwrite();
+
+    }
+
+    private TrackedCollections() {
+    }
+
+    /**
+     * Returns a change-recording wrapper of a collection, (one of {@link Set}, {@link Map}, or
+     * {@link List}). Changes are made to the collection itself; Only those made through the
+     * wrapper are recorded, (see {@link #trackCopy(Object)}).
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Tracked track(Object collection) {
+        if (collection instanceof Set) {
+            return new TrackedSet((Set) collection);
+        }
+        else if (collection instanceof Map) {
+            return new TrackedMap((Map) collection);
+        }
+        else if (collection instanceof List) {
+            return new TrackedList((List) collection);
+        }
+        else {
+            throw new IllegalArgumentException("unknown collection type: " + collection.getClass().getName());
+        }
+    }
+
+    /**
+     * Returns a change-recording copy of a collection, (in the same iteration order). Nothing else
+     * refers to the copy, so every change to it is recorded.
+     */
+    static Tracked trackCopy(Object collection) {
+        return track(copyOf(collection));
+    }
+
+    /**
+     * Copies a collection into one of the same kind; Sorted collections keep their comparator, and
+     * concurrent ones stay concurrent. Others are copied in iteration order.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Object copyOf(Object collection) {
+        if (collection instanceof ConcurrentSkipListSet) {
+            return new ConcurrentSkipListSet((SortedSet) collection);
+        }
+        else if (collection instanceof SortedSet) {
+            return new TreeSet((SortedSet) collection);
+        }
+        else if (collection instanceof Set) {
+            return Sets.newLinkedHashSet((Set) collection);
+        }
+        else if (collection instanceof ConcurrentNavigableMap) {
+            return new ConcurrentSkipListMap((SortedMap) collection);
+        }
+        else if (collection instanceof ConcurrentMap) {
+            return new ConcurrentHashMap((Map) collection);
+        }
+        else if (collection instanceof SortedMap) {
+            return new TreeMap((SortedMap) collection);
+        }
+        else if (collection instanceof Map) {
+            return Maps.newLinkedHashMap((Map) collection);
+        }
+        else if (collection instanceof CopyOnWriteArrayList) {
+            return new CopyOnWriteArrayList((List) collection);
+        }
+        else if (collection instanceof List) {
+            return Lists.newArrayList((List) collection);
+        }
+        else {
+            throw new IllegalArgumentException("unknown collection type: " + collection.getClass().getName());
+        }
+    }
+
+    /** A set that records the elements added and removed. */
+    static class TrackedSet<E> extends ForwardingSet<E> implements Tracked {
+
+        private final Set<E> m_delegate;
+        private Set<E> m_added = Sets.newHashSet();
+        private Set<Object> m_removed = Sets.newHashSet();
+        private boolean m_overwritten = false;
+
+        TrackedSet(Set<E> delegate) {
+            m_delegate = delegate;
+        }
+
+        @Override
+        protected Set<E> delegate() {
+            return m_delegate;
+        }
+
+        /** Elements added since last drained. */
+        synchronized Set<E> getAdded() {
+            return m_added;
+        }
+
+        /** Elements removed since last drained. */
+        synchronized Set<Object> getRemoved() {
+            return m_removed;
+        }
+
+        @Override
+        public synchronized boolean isChanged() {
+            return m_overwritten || !m_added.isEmpty() || !m_removed.isEmpty();
+        }
+
+        @Override
+        public synchronized boolean isOverwritten() {
+            return m_overwritten;
+        }
+
+        @Override
+        public synchronized TrackedSet<E> drain(boolean whole) {
+            TrackedSet<E> drained = new TrackedSet<E>((whole || m_overwritten) ? Sets.newHashSet(m_delegate) : Collections.<E> emptySet());
+            drained.m_added = m_added;
+            drained.m_removed = m_removed;
+            drained.m_overwritten = m_overwritten;
+
+            m_added = Sets.newHashSet();
+            m_removed = Sets.newHashSet();
+            m_overwritten = false;
+
+            return drained;
+        }
+
+        @Override
+        public synchronized void overwrite() {
+            m_overwritten = true;
+        }
+
+        private void recordAdd(E element) {
+            // An element removed, and added back, was never changed.
+            if (!m_removed.remove(element)) m_added.add(element);
+        }
+
+        private void recordRemove(Object element) {
+            if (!m_added.remove(element)) m_removed.add(element);
+        }
+
+        @Override
+        public synchronized boolean add(E element) {
+            if (!m_delegate.add(element)) return false;
+            recordAdd(element);
+            return true;
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends E> collection) {
+            return standardAddAll(collection);
+        }
+
+        @Override
+        public synchronized boolean remove(Object element) {
+            if (!m_delegate.remove(element)) return false;
+            recordRemove(element);
+            return true;
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> collection) {
+            return standardRemoveAll(collection);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> collection) {
+            return standardRetainAll(collection);
+        }
+
+        @Override
+        public synchronized void clear() {
+            m_delegate.clear();
+            m_overwritten = true;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            final Iterator<E> iterator = m_delegate.iterator();
+
+            return new ForwardingIterator<E>() {
+                private E m_last;
+
+                @Override
+                protected Iterator<E> delegate() {
+                    return iterator;
+                }
+
+                @Override
+                public E next() {
+                    return m_last = iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    synchronized (TrackedSet.this) {
+                        iterator.remove();
+                        recordRemove(m_last);
+                    }
+                }
+            };
+        }
+
+    }
+
+    /** A map that records the entries put, and the keys removed. */
+    static class TrackedMap<K, V> extends ForwardingMap<K, V> implements Tracked {
+
+        private final Map<K, V> m_delegate;
+        private Map<K, V> m_put = Maps.newHashMap();
+        private Set<Object> m_removed = Sets.newHashSet();
+        private boolean m_overwritten = false;
+
+        TrackedMap(Map<K, V> delegate) {
+            m_delegate = delegate;
+        }
+
+        @Override
+        protected Map<K, V> delegate() {
+            return m_delegate;
+        }
+
+        /** Entries put since last drained. */
+        synchronized Map<K, V> getPut() {
+            return m_put;
+        }
+
+        /** Keys removed since last drained. */
+        synchronized Set<Object> getRemoved() {
+            return m_removed;
+        }
+
+        @Override
+        public synchronized boolean isChanged() {
+            return m_overwritten || !m_put.isEmpty() || !m_removed.isEmpty();
+        }
+
+        @Override
+        public synchronized boolean isOverwritten() {
+            return m_overwritten;
+        }
+
+        @Override
+        public synchronized TrackedMap<K, V> drain(boolean whole) {
+            TrackedMap<K, V> drained = new TrackedMap<K, V>((whole || m_overwritten) ? Maps.newHashMap(m_delegate) : Collections.<K, V> emptyMap());
+            drained.m_put = m_put;
+            drained.m_removed = m_removed;
+            drained.m_overwritten = m_overwritten;
+
+            m_put = Maps.newHashMap();
+            m_removed = Sets.newHashSet();
+            m_overwritten = false;
+
+            return drained;
+        }
+
+        @Override
+        public synchronized void overwrite() {
+            m_overwritten = true;
+        }
+
+        private void recordPut(K key, V value) {
+            m_removed.remove(key);
+            m_put.put(key, value);
+        }
+
+        private void recordRemove(Object key) {
+            m_put.remove(key);
+            m_removed.add(key);
+        }
+
+        @Override
+        public synchronized V put(K key, V value) {
+            V past = m_delegate.put(key, value);
+            recordPut(key, value);
+            return past;
+        }
+
+        @Override
+        public void putAll(Map<? extends K, ? extends V> map) {
+            standardPutAll(map);
+        }
+
+        @Override
+        public synchronized V remove(Object key) {
+            if (!m_delegate.containsKey(key)) return null;
+            recordRemove(key);
+            return m_delegate.remove(key);
+        }
+
+        @Override
+        public synchronized void clear() {
+            m_delegate.clear();
+            m_overwritten = true;
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return new StandardKeySet();
+        }
+
+        @Override
+        public Collection<V> values() {
+            return new StandardValues();
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new StandardEntrySet() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return entryIterator();
+                }
+            };
+        }
+
+        private Iterator<Entry<K, V>> entryIterator() {
+            final Iterator<Entry<K, V>> iterator = m_delegate.entrySet().iterator();
+
+            return new ForwardingIterator<Entry<K, V>>() {
+                private Entry<K, V> m_last;
+
+                @Override
+                protected Iterator<Entry<K, V>> delegate() {
+                    return iterator;
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    final Entry<K, V> entry = m_last = iterator.next();
+
+                    return new ForwardingMapEntry<K, V>() {
+
+                        @Override
+                        protected Entry<K, V> delegate() {
+                            return entry;
+                        }
+
+                        @Override
+                        public V setValue(V value) {
+                            synchronized (TrackedMap.this) {
+                                V past = entry.setValue(value);
+                                recordPut(entry.getKey(), value);
+                                return past;
+                            }
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    synchronized (TrackedMap.this) {
+                        K key = m_last.getKey();
+                        iterator.remove();
+                        recordRemove(key);
+                    }
+                }
+            };
+        }
+
+    }
+
+    /**
+     * A list that records elements appended, prepended, or set by index; Only one of these kinds of
+     * change is recorded between writes, anything else overwrites the list.
+     */
+    static class TrackedList<E> extends ForwardingList<E> implements Tracked {
+
+        enum Change {
+            NONE, APPEND, PREPEND, SET, OVERWRITE
+        }
+
+        private final List<E> m_delegate;
+        private List<E> m_added = Lists.newArrayList();
+        private Map<Integer, E> m_set = Maps.newHashMap();
+        private Change m_change = Change.NONE;
+
+        TrackedList(List<E> delegate) {
+            m_delegate = delegate;
+        }
+
+        @Override
+        protected List<E> delegate() {
+            return m_delegate;
+        }
+
+        /** The kind of change made since last drained. */
+        synchronized Change getChange() {
+            return m_change;
+        }
+
+        /** Elements appended or prepended since last drained, (in list order). */
+        synchronized List<E> getAdded() {
+            return m_added;
+        }
+
+        /** Elements set since last drained, by index. */
+        synchronized Map<Integer, E> getSet() {
+            return m_set;
+        }
+
+        @Override
+        public synchronized boolean isChanged() {
+            return m_change != Change.NONE;
+        }
+
+        @Override
+        public synchronized boolean isOverwritten() {
+            return m_change == Change.OVERWRITE;
+        }
+
+        @Override
+        public synchronized TrackedList<E> drain(boolean whole) {
+            TrackedList<E> drained = new TrackedList<E>((whole || m_change == Change.OVERWRITE) ? Lists.newArrayList(m_delegate) : Collections.<E> emptyList());
+            drained.m_added = m_added;
+            drained.m_set = m_set;
+            drained.m_change = m_change;
+
+            m_added = Lists.newArrayList();
+            m_set = Maps.newHashMap();
+            m_change = Change.NONE;
+
+            return drained;
+        }
+
+        @Override
+        public synchronized void overwrite() {
+            m_change = Change.OVERWRITE;
+        }
+
+        /** Records a kind of change; True if it is recorded, (false if the list is overwritten). */
+        private boolean record(Change change) {
+            if (m_change == Change.NONE) {
+                m_change = change;
+            }
+            else if (m_change != change) {
+                m_change = Change.OVERWRITE;
+            }
+            return m_change == change && change != Change.OVERWRITE;
+        }
+
+        @Override
+        public synchronized boolean add(E element) {
+            m_delegate.add(element);
+            if (record(Change.APPEND)) m_added.add(element);
+            return true;
+        }
+
+        @Override
+        public synchronized void add(int index, E element) {
+            Change change = (index == size()) ? Change.APPEND : (index == 0) ? Change.PREPEND : Change.OVERWRITE;
+            m_delegate.add(index, element);
+
+            if (record(change)) {
+                m_added.add((change == Change.APPEND) ? m_added.size() : 0, element);
+            }
+        }
+
+        @Override
+        public synchronized boolean addAll(Collection<? extends E> collection) {
+            return standardAddAll(collection);
+        }
+
+        @Override
+        public synchronized boolean addAll(int index, Collection<? extends E> collection) {
+            if (index == size()) {
+                return addAll(collection);
+            }
+
+            Change change = (index == 0) ? Change.PREPEND : Change.OVERWRITE;
+
+            if (!m_delegate.addAll(index, collection)) return false;
+            if (record(change)) m_added.addAll(0, collection);
+            return true;
+        }
+
+        @Override
+        public synchronized E set(int index, E element) {
+            E past = m_delegate.set(index, element);
+            if (record(Change.SET)) m_set.put(index, element);
+            return past;
+        }
+
+        @Override
+        public synchronized E remove(int index) {
+            E past = m_delegate.remove(index);
+            record(Change.OVERWRITE);
+            return past;
+        }
+
+        @Override
+        public synchronized boolean remove(Object element) {
+            if (!m_delegate.remove(element)) return false;
+            record(Change.OVERWRITE);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean removeAll(Collection<?> collection) {
+            if (!m_delegate.removeAll(collection)) return false;
+            record(Change.OVERWRITE);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean retainAll(Collection<?> collection) {
+            if (!m_delegate.retainAll(collection)) return false;
+            record(Change.OVERWRITE);
+            return true;
+        }
+
+        @Override
+        public synchronized void clear() {
+            m_delegate.clear();
+            record(Change.OVERWRITE);
+        }
+
+        // Iterators and sub-lists are implemented in terms of the methods above.
+
+        @Override
+        public Iterator<E> iterator() {
+            return standardIterator();
+        }
+
+        @Override
+        public ListIterator<E> listIterator() {
+            return standardListIterator();
+        }
+
+        @Override
+        public ListIterator<E> listIterator(int index) {
+            return standardListIterator(index);
+        }
+
+        @Override
+        public List<E> subList(int fromIndex, int toIndex) {
+            return standardSubList(fromIndex, toIndex);
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+
+/**
+ * Retries of writes that time out. A timed out write may or may not have been applied; Since every
+ * statement of a write carries the same client-side timestamp, sending it again can't reorder it
+ * with a later write, and (for most writes) applying it twice is the same as applying it once.
+ * Retries back off exponentially, (doubling the delay each time).
+ * <p>
+ * Counter writes are never retried, (an increment applied twice counts twice), nor are writes of a
+ * list; Whether appended, prepended, or written whole, each element written is given a new cell,
+ * so a list written twice has its elements twice. Pass a policy to
+ * {@link CassandraEntityStoreFactory#setWriteRetryPolicy(WriteRetryPolicy)} to enable.
+ */
+public class WriteRetryPolicy {
+
+    /**
+     * One attempt at a write.
+     */
+    interface Attempt<V> {
+
+        /**
+         * Executes the attempt.
+         *
+         * @return the result
+         */
+        V execute();
+
+    }
+
+    private final int m_maxRetries;
+    private final long m_backoffNanos;
+    private final AtomicLong m_writes = new AtomicLong();
+    private final AtomicLong m_retries = new AtomicLong();
+    private final AtomicLong m_timeouts = new AtomicLong();
+
+    private WriteRetryPolicy(int maxRetries, long backoffNanos) {
+        m_maxRetries = maxRetries;
+        m_backoffNanos = backoffNanos;
+    }
+
+    /**
+     * Returns a policy that retries a timed out write up to <code>maxRetries</code> times.
+     *
+     * @param maxRetries
+     *            maximum number of retries, (after the first attempt)
+     * @param backoff
+     *            delay before the first retry, (doubled for each one after)
+     * @param unit
+     *            unit of the backoff
+     * @return a write retry policy
+     */
+    public static WriteRetryPolicy retries(int maxRetries, long backoff, TimeUnit unit) {
+        checkArgument(maxRetries >= 0, "max retries must be positive");
+        checkArgument(backoff >= 0, "backoff must be positive");
+        checkNotNull(unit, "unit argument");
+        return new WriteRetryPolicy(maxRetries, unit.toNanos(backoff));
+    }
+
+    /** Maximum number of retries of any one write. */
+    public int getMaxRetries() {
+        return m_maxRetries;
+    }
+
+    /** Delay before the first retry of a write. */
+    public long getBackoff(TimeUnit unit) {
+        return unit.convert(m_backoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Total number of writes executed under this policy. */
+    public long getWrites() {
+        return m_writes.get();
+    }
+
+    /** Number of retries sent, (across all writes). */
+    public long getRetries() {
+        return m_retries.get();
+    }
+
+    /** Number of writes that failed with a timeout, once out of retries. */
+    public long getTimeouts() {
+        return m_timeouts.get();
+    }
+
+    /**
+     * Executes a write, retrying it on timeout.
+     *
+     * @param attempt
+     *            the write to execute, (which must be safe to apply more than once)
+     * @return the result of the first attempt to succeed
+     */
+    <V> V execute(Attempt<V> attempt) {
+
+        m_writes.incrementAndGet();
+
+        for (int retries = 0;; retries++) {
+            try {
+                return attempt.execute();
+            }
+            catch (WriteTimeoutException e) {
+                if (retries >= m_maxRetries || e.getWriteType().equals(WriteType.COUNTER)) {
+                    m_timeouts.incrementAndGet();
+                    throw e;
+                }
+            }
+
+            m_retries.incrementAndGet();
+            Uninterruptibles.sleepUninterruptibly(m_backoffNanos << Math.min(retries, 16), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format(
+                "%s[maxRetries=%d, backoff=%dms, writes=%d, retries=%d]",
+                getClass().getSimpleName(),
+                getMaxRetries(),
+                getBackoff(TimeUnit.MILLISECONDS),
+                getWrites(),
+                getRetries());
+    }
+
+}
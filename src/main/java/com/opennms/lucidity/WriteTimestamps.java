@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Client-side write timestamps, (in microseconds since the epoch, as Cassandra expects). Each
+ * logical write takes one, and applies it to every statement it is made of, so that a retried
+ * statement lands at the same timestamp as the original. Timestamps never repeat, and never go
+ * backwards, (even should the clock).
+ */
+class WriteTimestamps {
+
+    private final AtomicLong m_last = new AtomicLong();
+
+    /** Returns the next timestamp; Later than any returned before it. */
+    long next() {
+        while (true) {
+            long last = m_last.get();
+            long next = Math.max(currentTimeMicros(), last + 1);
+
+            if (m_last.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    long currentTimeMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+}
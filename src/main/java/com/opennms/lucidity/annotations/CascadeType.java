@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity.annotations;
+
+/**
+ * Operations that a {@link OneToMany} relation cascades to its related entities.
+ */
+public enum CascadeType {
+    /**
+     * Related entities not yet persisted (those with a null ID) are created along with the owning
+     * entity, in the same write, whether on create or (for those newly added) on update.
+     */
+    CREATE,
+    /**
+     * Related entities are owned, and deleted along with the owning entity, (including their index
+     * rows, and any entities they in turn own). The related IDs are read as stored, and the related
+     * entities deleted concurrently, before the owning entity itself.
+     */
+    DELETE;
+}
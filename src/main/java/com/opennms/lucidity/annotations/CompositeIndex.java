@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity.annotations;
+
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+
+/**
+ * Declares an index on a combination of columns, for lookups that match all of them at once.
+ * <p>
+ * A composite index is a table keyed by the tuple of its column values, (named for the entity
+ * table and the columns, <code>addresses_city_zipcode_idx</code> for example), written along with
+ * the entity whenever any of its columns change.
+ *
+ * <pre>
+ *    Example:
+ * 
+ *    &#064;Entity
+ *    &#064;Table(name="addresses")
+ *    &#064;CompositeIndex(columns={"city", "zipcode"})
+ *    public class Address { ... }
+ * </pre>
+ * 
+ * Use {@link CompositeIndexes} to declare more than one.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface CompositeIndex {
+
+    /**
+     * The names of the indexed columns, (two or more standard columns).
+     */
+    String[] columns();
+
+}
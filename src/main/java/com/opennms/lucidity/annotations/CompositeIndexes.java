@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity.annotations;
+
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+
+/**
+ * Declares more than one {@link CompositeIndex} on an entity.
+ *
+ * <pre>
+ *    Example:
+ * 
+ *    &#064;Entity
+ *    &#064;CompositeIndexes({
+ *        &#064;CompositeIndex(columns={"city", "zipcode"}),
+ *        &#064;CompositeIndex(columns={"street", "city"})
+ *    })
+ *    public class Address { ... }
+ * </pre>
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface CompositeIndexes {
+
+    CompositeIndex[] value();
+
+}
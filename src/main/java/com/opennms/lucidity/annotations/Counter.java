@@ -0,0 +1,52 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity.annotations;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Defines a counter column. Counters cannot share a table with other columns, so an entity's
+ * counters are stored in a table of their own, (named for the entity's table, with a
+ * <code>_counters</code> suffix), keyed by the entity ID.
+ * <p>
+ * Counters are read with the entity. An update writes the difference between a counter's value and
+ * its value when last read (or written), as an increment, so concurrent updates add up rather than
+ * overwrite one another. Increments are applied after the rest of the update, at most once; An
+ * update that fails to apply them throws, but retrying it won't apply them again. A counter can
+ * also be incremented without reading the entity at all, (see
+ * {@link com.opennms.lucidity.EntityStore#increment(Class, java.util.UUID, String, long)}).
+ * Counter fields must be of type <code>long</code> (or <code>Long</code>), and cannot be indexed.
+ *
+ * <pre>
+ *
+ *    Example 1:
+ *
+ *    &#064;Counter
+ *    &#064;Column(name="hits")
+ *    private long hits;
+ *
+ * </pre>
+ *
+ */
+@Target({ FIELD })
+@Retention(RUNTIME)
+public @interface Counter {
+
+}
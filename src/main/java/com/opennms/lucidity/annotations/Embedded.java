@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity.annotations;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Defines a collection of objects stored inline, on the owning entity's row. Embedded objects have
+ * no table (or ID) of their own, are never read or written on their own, and come back with the
+ * entity in a single row read.
+ * <p>
+ * The embedded class must have a nullary constructor, and persists its {@link Column} annotated
+ * fields (of standard, non-collection types). Each object is serialized to a <code>blob</code>,
+ * and the collection stored as a <code>set&lt;blob&gt;</code>; Updates add and remove only the
+ * objects that changed. Being a set, equal objects are stored once, and order is not preserved,
+ * so the field must be declared a {@link java.util.Set}, (a <code>List</code> or
+ * <code>Collection</code> is rejected, rather than read back reordered and without duplicates).
+ *
+ * <pre>
+ *
+ *    Example 1:
+ *
+ *    &#064;Embedded
+ *    &#064;Column(name="phones")
+ *    private Set&lt;Phone&gt; phones;
+ *
+ * </pre>
+ *
+ */
+@Target({ FIELD })
+@Retention(RUNTIME)
+public @interface Embedded {
+
+}
@@ -43,7 +43,8 @@ public @interface EmbeddedCollection {
 
     /**
      * (Optional) The strategy to use when updating the column. Defaults to updating only the
-     * altered elements of the collection.
+     * altered elements of the collection. Lists are appended to, prepended to, or have elements set
+     * by index, where the change is one of those; Otherwise they are rewritten whole.
      */
     UpdateStrategy updateStrategy() default UpdateStrategy.ELEMENT;
 
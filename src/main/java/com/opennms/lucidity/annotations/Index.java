@@ -25,5 +25,48 @@ import java.lang.annotation.Target;
 @Target({METHOD, FIELD})
 @Retention(RUNTIME)
 public @interface Index {
+
+    /** (Optional) How the index is implemented. */
     IndexType type() default IndexType.INVERTED;
+
+    /**
+     * (Optional) The number of partitions an {@link IndexType#ORDERED} index is spread across.
+     * More buckets make for smaller partitions, but range queries must read every one.
+     */
+    int buckets() default 16;
+
+    /**
+     * (Optional) The width of the value ranges (periods) an {@link IndexType#ORDERED} index is also
+     * partitioned by; In milliseconds for a timestamp column, (a day is 86400000). Each partition
+     * then holds one bucket of one period's values, so partitions stay as small as a period is
+     * busy. Range queries read every bucket of each period they span, and must be bounded at both
+     * ends. Zero (the default) partitions by bucket alone, and those partitions grow with the table.
+     */
+    long period() default 0;
+
+    /**
+     * (Optional) The number of partitions each indexed value is spread across, (by entity ID).
+     * Sharding keeps the index partitions of low-cardinality values (a status, or a country, for
+     * example) from growing without bound, but lookups must read every shard. Applies to
+     * {@link IndexType#INVERTED}, {@link IndexType#ELEMENTS}, and {@link IndexType#KEYS} indexes.
+     */
+    int shards() default 1;
+
+    /**
+     * (Optional) Whether to keep a count of the entities with each indexed value, in a counter
+     * table (<code>&lt;table&gt;_&lt;column&gt;_count</code>). Counter updates are not atomic
+     * with the entity, so the count is approximate. Does not apply to {@link IndexType#NATIVE}
+     * indexes.
+     */
+    boolean counted() default false;
+
+    /**
+     * (Optional) Names of other (standard) columns to store in the index, alongside the entity ID.
+     * Reads of a covering index can then be answered from the index alone, (see
+     * <code>EntityStore.readProjection(...)</code>), at the cost of rewriting index rows whenever a
+     * covered column changes. Applies to {@link IndexType#INVERTED} and {@link IndexType#ORDERED}
+     * indexes.
+     */
+    String[] covering() default {};
+
 }
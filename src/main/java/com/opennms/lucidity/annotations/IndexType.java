@@ -15,6 +15,37 @@
  */
 package com.opennms.lucidity.annotations;
 
+/**
+ * How an {@link Index} is implemented.
+ */
 public enum IndexType {
-    INVERTED;
+    /**
+     * A table (<code>&lt;table&gt;_&lt;column&gt;_idx</code>) mapping indexed values to entity IDs,
+     * written alongside the entity.
+     */
+    INVERTED,
+    /**
+     * A Cassandra (native) secondary index on the entity table. Writes touch only the entity row,
+     * but lookups are answered by every node; Best suited to columns that are written often, and
+     * queried seldom.
+     */
+    NATIVE,
+    /**
+     * A table of indexed values ordered within partitions, (as clustering columns), supporting
+     * range queries as well as equality. Entities are spread across a fixed number of partitions
+     * (see {@link Index#buckets()}), by ID, and range queries read all of them. Applies to
+     * <code>int</code>, <code>bigint</code>, <code>double</code>, and <code>timestamp</code>
+     * columns.
+     */
+    ORDERED,
+    /**
+     * An index of the elements of a collection; The members of a <code>set</code>, or the values of
+     * a <code>map</code>. Written incrementally, only the elements added or removed by an update
+     * touch the index.
+     */
+    ELEMENTS,
+    /**
+     * An index of the keys of a <code>map</code>. Written incrementally, like {@link #ELEMENTS}.
+     */
+    KEYS;
 }
@@ -38,5 +38,23 @@ import java.lang.annotation.Target;
 @Retention(RUNTIME)
 public @interface OneToMany {
 
+    /**
+     * (Optional) How the relation is stored. Defaults to a join table.
+     */
+    RelationStorage storage() default RelationStorage.JOIN_TABLE;
+
+    /**
+     * (Optional) Whether to also map related entities back to their owner, in a table
+     * (<code>&lt;table&gt;_&lt;related table&gt;_rev</code>) keyed by the related ID, so that owners
+     * can be found by a related entity (see
+     * {@link com.opennms.lucidity.EntityStore#readParents(Class, String, java.util.UUID)}).
+     */
+    boolean reversed() default false;
+
+    /**
+     * (Optional) Operations to cascade to related entities. Defaults to none.
+     */
+    CascadeType[] cascade() default {};
+
 }
 
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity.annotations;
+
+/**
+ * How a {@link OneToMany} relation is stored.
+ */
+public enum RelationStorage {
+    /**
+     * A table (<code>&lt;table&gt;_&lt;related table&gt;</code>) of the related entity IDs,
+     * partitioned by the owning entity; Loading the relation costs a read of its own.
+     */
+    JOIN_TABLE,
+    /**
+     * A <code>set&lt;uuid&gt;</code> column (<code>&lt;related table&gt;_ids</code>) on the owning
+     * entity's row, updated with only the IDs added or removed. The IDs arrive with the entity
+     * itself; Best suited to small, bounded relations.
+     */
+    ID_SET;
+}
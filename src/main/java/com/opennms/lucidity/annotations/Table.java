@@ -47,4 +47,15 @@ public @interface Table {
      */
     String name() default "";
 
+    /**
+     * (Optional) Default time-to-live of the entity, in seconds, or 0 for none.
+     * <p>
+     * Applied (with <code>USING TTL</code>) to everything written for the entity; Its row, and its
+     * index and relation rows, so that all of it expires together. To that end, an update of an
+     * entity with a time-to-live rewrites it whole, (restarting the clock). Entities created by
+     * cascade are written with the time-to-live of their own table, (not that of the entity that
+     * created them). Entities with counters, or counted indexes, cannot expire.
+     */
+    int ttl() default 0;
+
 }
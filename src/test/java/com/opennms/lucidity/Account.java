@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.opennms.lucidity.annotations.CascadeType;
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Embedded;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.OneToMany;
+import com.opennms.lucidity.annotations.RelationStorage;
+import com.opennms.lucidity.annotations.Table;
+
+
+@Entity
+@Table(name = "accounts")
+class Account {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "name")
+    private String m_name;
+
+    @OneToMany(storage = RelationStorage.ID_SET, reversed = true, cascade = { CascadeType.CREATE, CascadeType.DELETE })
+    private Collection<Address> m_addresses = Lists.newArrayList();
+
+    @Embedded
+    @Column(name = "phones")
+    private Set<Phone> m_phones = Sets.newHashSet();
+
+    Account() {
+
+    }
+
+    Account(String name) {
+        m_name = name;
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    void setName(String name) {
+        m_name = name;
+    }
+
+    Collection<Address> getAddresses() {
+        return m_addresses;
+    }
+
+    void setAddresses(Collection<Address> addresses) {
+        m_addresses = addresses;
+    }
+
+    Set<Phone> getPhones() {
+        return m_phones;
+    }
+
+    void setPhones(Set<Phone> phones) {
+        m_phones = phones;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, addresses=%s]", getClass().getSimpleName(), getName(), getAddresses());
+    }
+
+}
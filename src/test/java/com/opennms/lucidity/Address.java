@@ -20,6 +20,7 @@ import java.util.UUID;
 
 import com.google.common.base.Objects;
 import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.CompositeIndex;
 import com.opennms.lucidity.annotations.Entity;
 import com.opennms.lucidity.annotations.Id;
 import com.opennms.lucidity.annotations.Table;
@@ -27,6 +28,7 @@ import com.opennms.lucidity.annotations.Table;
 
 @Entity
 @Table(name = "addresses")
+@CompositeIndex(columns = { "city", "zipcode" })
 class Address {
 
     @Id
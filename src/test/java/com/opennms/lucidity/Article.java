@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.opennms.lucidity.annotations.IndexType.ELEMENTS;
+
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.collect.Sets;
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.EmbeddedCollection;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Index;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** An entity whose collection elements are indexed. */
+@Entity
+@Table(name = "articles")
+class Article {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "title")
+    private String m_title;
+
+    @Index(type = ELEMENTS)
+    @EmbeddedCollection
+    @Column(name = "tags")
+    private Set<String> m_tags = Sets.newHashSet();
+
+    Article() {
+
+    }
+
+    Article(String title, String... tags) {
+        m_title = title;
+        m_tags.addAll(Sets.newHashSet(tags));
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getTitle() {
+        return m_title;
+    }
+
+    Set<String> getTags() {
+        return m_tags;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %s]", getClass().getSimpleName(), getTitle(), getTags());
+    }
+
+}
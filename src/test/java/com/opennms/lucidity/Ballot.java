@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.opennms.lucidity.annotations.IndexType.INVERTED;
+
+import java.util.UUID;
+
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Index;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** An entity with a counted index. */
+@Entity
+@Table(name = "ballots")
+class Ballot {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "voter")
+    private String m_voter;
+
+    @Index(type = INVERTED, counted = true)
+    @Column(name = "choice")
+    private String m_choice;
+
+    Ballot() {
+
+    }
+
+    Ballot(String voter, String choice) {
+        m_voter = voter;
+        m_choice = choice;
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getVoter() {
+        return m_voter;
+    }
+
+    String getChoice() {
+        return m_choice;
+    }
+
+    void setChoice(String choice) {
+        m_choice = choice;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %s]", getClass().getSimpleName(), getVoter(), getChoice());
+    }
+
+}
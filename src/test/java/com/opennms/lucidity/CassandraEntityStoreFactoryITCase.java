@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+
+
+public class CassandraEntityStoreFactoryITCase {
+
+    // The data center of a single node test cluster, (as named by the SimpleSnitch).
+    private static final String LOCAL_DC = "datacenter1";
+
+    @Test
+    public void testLocalDataCenter() {
+
+        EntityStore store = new CassandraEntityStoreFactory(Arrays.asList("localhost"), 9042, "lucidity_test", ConsistencyLevel.LOCAL_QUORUM, LOCAL_DC).createEntityStore();
+        Address address = store.create(new Address("Dove Flight", "San Antonio", "78250"));
+
+        assertTrue(store.read(Address.class, address.getId()).isPresent());
+
+    }
+
+    @Test(expected = LucidityException.class)
+    public void testUnavailableLocalDataCenter() {
+
+        // Remote nodes are never tried; With none in the local data center, nothing can be done.
+        EntityStore store = new CassandraEntityStoreFactory(Arrays.asList("localhost"), 9042, "lucidity_test", ConsistencyLevel.LOCAL_QUORUM, "elsewhere").createEntityStore();
+        store.create(new Address("Dove Flight", "San Antonio", "78250"));
+
+    }
+
+    @Test
+    public void testTableChanges() {
+
+        Cluster cluster = Cluster.builder().addContactPoint("localhost").withPort(9042).build();
+
+        try {
+            Session session = cluster.connect("lucidity_test");
+            Tables tables = new Tables(cluster.getMetadata(), "lucidity_test");
+
+            session.execute("DROP TABLE IF EXISTS tables_test");
+            assertNull(tables.getTable("tables_test"));
+
+            // Created, then re-created with another partition key; Statements follow the schema.
+            session.execute("CREATE TABLE tables_test (id uuid PRIMARY KEY, name text)");
+            assertEquals(1, tables.getTable("tables_test").getPartitionKey().size());
+
+            session.execute("DROP TABLE tables_test");
+            session.execute("CREATE TABLE tables_test (bucket int, id uuid, name text, PRIMARY KEY((bucket, id)))");
+            assertEquals(2, tables.getTable("tables_test").getPartitionKey().size());
+
+            session.execute("DROP TABLE tables_test");
+        }
+        finally {
+            cluster.shutdown();
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+
+public class CassandraEntityStoreTest {
+
+    @Test
+    public void testCollectionsResendable() {
+        assertTrue(CassandraEntityStore.isResendable(Sets.newHashSet("a", "b")));
+        assertTrue(CassandraEntityStore.isResendable(Collections.singletonMap("a", "1")));
+        assertTrue(CassandraEntityStore.isResendable(Collections.emptyList()));
+        assertTrue(CassandraEntityStore.isResendable(null));
+
+        // List elements are given a new cell each time they're written.
+        assertFalse(CassandraEntityStore.isResendable(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void testCreateResendable() {
+
+        Schema schema = Schema.fromClass(User.class);
+        User user = new User("Thomas", "Anderson", "neo@whiterabbit.org");
+        user.getDays().add("monday");
+
+        assertTrue(CassandraEntityStore.isResendable(schema, user));
+
+        // A create that writes a list is never retried.
+        user.getScores().add(42);
+        assertFalse(CassandraEntityStore.isResendable(schema, user));
+    }
+
+    @Test
+    public void testDirtyFields() {
+        Schema schema = Schema.fromClass(Device.class);
+        CassandraEntityStore.checkDirtyFields(schema, Sets.newHashSet("m_name", "m_location", "m_hits"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDirtyField() {
+        CassandraEntityStore.checkDirtyFields(Schema.fromClass(Device.class), Sets.newHashSet("m_nmae"));
+    }
+
+}
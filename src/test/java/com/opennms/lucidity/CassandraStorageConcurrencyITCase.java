@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+
+/**
+ * Hammers a single, shared {@link EntityStore} from many threads at once.
+ */
+public class CassandraStorageConcurrencyITCase {
+
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 50;
+
+    private EntityStore m_entityStore;
+    private ExecutorService m_executor;
+
+    @Before
+    public void setUp() throws Exception {
+        m_entityStore = new CassandraEntityStoreFactory("localhost", 9042, "lucidity_test", ConsistencyLevel.ONE).createEntityStore();
+        m_executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_executor.shutdownNow();
+        m_entityStore.close();
+    }
+
+    @Test
+    public void testCreateUpdateReadDelete() throws Exception {
+
+        List<Callable<Integer>> tasks = Lists.newArrayList();
+
+        for (int i = 0; i < THREADS; i++) {
+            final String email = format("thread%d@stress.org", i);
+
+            tasks.add(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+                    int iterations = 0;
+
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        User user = m_entityStore.create(new User("Stress", "Test", email));
+
+                        user.setAge(j);
+                        user.getDays().add(String.valueOf(j));
+                        m_entityStore.update(user);
+
+                        User read = m_entityStore.read(User.class, user.getId()).get();
+                        assertEquals(j, read.getAge());
+                        assertTrue(read.getDays().contains(String.valueOf(j)));
+
+                        read.setAge(j + 1);
+                        m_entityStore.update(read);
+
+                        m_entityStore.delete(read);
+                        assertFalse(m_entityStore.read(User.class, user.getId()).isPresent());
+
+                        iterations++;
+                    }
+
+                    return iterations;
+                }
+            });
+        }
+
+        for (Future<Integer> result : m_executor.invokeAll(tasks)) {
+            assertEquals(Integer.valueOf(ITERATIONS), result.get());
+        }
+
+        for (int i = 0; i < THREADS; i++) {
+            assertEquals(0, m_entityStore.read(User.class, "email", format("thread%d@stress.org", i)).size());
+        }
+
+    }
+
+    @Test
+    public void testConcurrentUpdatesOfSharedInstance() throws Exception {
+
+        final User user = new User("Shared", "Instance", "shared@stress.org");
+        user.setFavorites(new ConcurrentHashMap<String, String>());
+        user.setDays(Sets.<String>newConcurrentHashSet());
+        m_entityStore.create(user);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+
+            m_executor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        for (int j = 0; j < ITERATIONS; j++) {
+                            user.getFavorites().put(format("%d-%d", thread, j), "value");
+                            user.getDays().add(format("%d-%d", thread, j));
+                            m_entityStore.update(user);
+                        }
+                    }
+                    catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        m_executor.shutdown();
+        assertTrue(m_executor.awaitTermination(5, TimeUnit.MINUTES));
+        assertEquals(0, failures.get());
+
+        // Every change, made by any thread, must have been written by one update or another.
+        User read = get(m_entityStore.read(User.class, user.getId()));
+
+        assertEquals(THREADS * ITERATIONS, read.getFavorites().size());
+        assertEquals(THREADS * ITERATIONS, read.getDays().size());
+
+    }
+
+    @Test
+    public void testConcurrentReadsOfSameEntity() throws Exception {
+
+        final UUID id = m_entityStore.create(new User("Many", "Readers", "readers@stress.org")).getId();
+        List<Callable<Boolean>> tasks = Lists.newArrayList();
+
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(new Callable<Boolean>() {
+
+                @Override
+                public Boolean call() throws Exception {
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        User user = get(m_entityStore.read(User.class, id));
+
+                        // Every reader gets an instance of its own, and tracks it independently.
+                        user.setAge(j);
+                        m_entityStore.update(user);
+                    }
+                    return true;
+                }
+            });
+        }
+
+        for (Future<Boolean> result : m_executor.invokeAll(tasks)) {
+            assertTrue(result.get());
+        }
+
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCloseIsVisibleAcrossThreads() throws Throwable {
+
+        m_executor.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException {
+                m_entityStore.close();
+                return null;
+            }
+        }).get();
+
+        m_entityStore.read(User.class, UUID.randomUUID());
+
+    }
+
+    private static String format(String fmt, Object... args) {
+        return String.format(fmt, args);
+    }
+
+    private <T> T get(Optional<T> ref) {
+        assertTrue(ref.isPresent());
+        return ref.get();
+    }
+
+}
@@ -16,15 +16,21 @@
 package com.opennms.lucidity;
 
 
+import static com.datastax.driver.core.querybuilder.QueryBuilder.delete;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -33,6 +39,7 @@ import org.junit.Test;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 
@@ -212,6 +219,328 @@ public class CassandraStorageTestITCase {
 
     }
 
+    @Test
+    public void testOneToManyIdSet() {
+
+        Address home = m_entityStore.create(new Address("Dove Flight", "San Antonio", "78250"));
+        Address work = m_entityStore.create(new Address("Pecan Street", "San Antonio", "78205"));
+
+        Account account = new Account("Acme");
+        account.getAddresses().add(home);
+        m_entityStore.create(account);
+
+        Account read = get(m_entityStore.read(Account.class, account.getId()));
+
+        assertEquals(Sets.newHashSet(home), Sets.newHashSet(read.getAddresses()));
+
+        read.getAddresses().remove(home);
+        read.getAddresses().add(work);
+        m_entityStore.update(read);
+
+        read = get(m_entityStore.read(Account.class, account.getId()));
+
+        assertEquals(Sets.newHashSet(work), Sets.newHashSet(read.getAddresses()));
+
+    }
+
+    @Test
+    public void testLargeOneToMany() {
+
+        User user = new User("Agent", "Smith", "smith@matrix.com");
+        user.setAddresses(Lists.<Address> newArrayList());
+        Set<UUID> ids = Sets.newHashSet();
+
+        // More relations than are written with the entity, (they are batched separately).
+        for (int i = 0; i < 1200; i++) {
+            Address address = m_entityStore.create(new Address(i + " Main Street", "Mega City", "00001"));
+            user.getAddresses().add(address);
+            ids.add(address.getId());
+        }
+
+        m_entityStore.create(user);
+
+        assertEquals(ids, Sets.newHashSet(m_entityStore.readRelationIDs(User.class, user.getId(), "m_addresses")));
+
+        User read = get(m_entityStore.read(User.class, user.getId()));
+
+        assertEquals(1200, read.getAddresses().size());
+
+        read.getAddresses().clear();
+        m_entityStore.update(read);
+
+        assertFalse(m_entityStore.readRelationIDs(User.class, user.getId(), "m_addresses").iterator().hasNext());
+
+    }
+
+    @Test
+    public void testCascadeCreate() {
+
+        Address home = new Address("Dove Flight", "San Antonio", "78250");
+
+        Account account = new Account("Acme");
+        account.getAddresses().add(home);
+        m_entityStore.create(account);
+
+        assertNotNull(home.getId());
+        assertEquals(home, get(m_entityStore.read(Address.class, home.getId())));
+
+        // Newly added (unsaved) entities are created on update.
+        Address work = new Address("Pecan Street", "San Antonio", "78205");
+        account.getAddresses().add(work);
+        m_entityStore.update(account);
+
+        assertNotNull(work.getId());
+
+        Account read = get(m_entityStore.read(Account.class, account.getId()));
+
+        assertEquals(Sets.newHashSet(home, work), Sets.newHashSet(read.getAddresses()));
+
+        // Created entities are tracked, and can be updated.
+        work.setStreet("Walnut Street");
+        m_entityStore.update(work);
+
+        assertEquals("Walnut Street", get(m_entityStore.read(Address.class, work.getId())).getStreet());
+
+    }
+
+    @Test
+    public void testCascadeDelete() {
+
+        String zipcode = UUID.randomUUID().toString();
+
+        Account account = new Account("Acme");
+        account.getAddresses().add(new Address("Dove Flight", "Owned City", zipcode));
+        account.getAddresses().add(new Address("Pecan Street", "Owned City", zipcode));
+        m_entityStore.create(account);
+
+        Map<String, Object> values = Maps.newHashMap();
+        values.put("city", "Owned City");
+        values.put("zipcode", zipcode);
+
+        assertEquals(2, m_entityStore.read(Address.class, values).size());
+
+        // Owned addresses are found as stored, not as set on the instance deleted.
+        m_entityStore.delete(get(m_entityStore.read(Account.class, account.getId())));
+
+        for (Address address : account.getAddresses()) {
+            assertFalse(m_entityStore.read(Address.class, address.getId()).isPresent());
+            assertTrue(m_entityStore.readParents(Account.class, "m_addresses", address.getId()).isEmpty());
+        }
+
+        // Index rows are removed too.
+        assertTrue(m_entityStore.read(Address.class, values).isEmpty());
+
+    }
+
+    @Test
+    public void testReadParents() {
+
+        Address address = m_entityStore.create(new Address("Dove Flight", "San Antonio", "78250"));
+
+        Account account = new Account("Acme");
+        account.getAddresses().add(address);
+        m_entityStore.create(account);
+
+        Collection<Account> parents = m_entityStore.readParents(Account.class, "m_addresses", address.getId());
+
+        assertEquals(1, parents.size());
+        assertEquals(account.getId(), parents.iterator().next().getId());
+
+        Account read = parents.iterator().next();
+        read.getAddresses().clear();
+        m_entityStore.update(read);
+
+        assertTrue(m_entityStore.readParents(Account.class, "m_addresses", address.getId()).isEmpty());
+
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadParentsOfUnreversedRelation() {
+        m_entityStore.readParents(User.class, "m_addresses", UUID.randomUUID());
+    }
+
+    @Test
+    public void testRetainedCollectionReference() {
+
+        Set<String> days = Sets.newHashSet("monday");
+        User user = new User("Thomas", "Anderson", "neo@whiterabbit.org");
+        user.setDays(days);
+        m_entityStore.create(user);
+
+        // The instance holds a tracked copy; The reference kept is detached from it ...
+        days.add("tuesday");
+        assertFalse(user.getDays().contains("tuesday"));
+
+        user.getDays().add("friday");
+        m_entityStore.update(user);
+
+        assertEquals(Sets.newHashSet("monday", "friday"), get(m_entityStore.read(User.class, user.getId())).getDays());
+
+        // ... until it is assigned to the field again, (and written whole).
+        user.setDays(days);
+        m_entityStore.update(user);
+
+        assertEquals(Sets.newHashSet("monday", "tuesday"), get(m_entityStore.read(User.class, user.getId())).getDays());
+
+    }
+
+    @Test
+    public void testDirtyTracking() {
+
+        Device device = m_entityStore.create(new Device("router", "rack 1"));
+        assertTrue(device.getDirtyFields().isEmpty());
+
+        device.setName("switch");
+        device.setLocationQuietly("rack 2");
+        m_entityStore.update(device);
+
+        // Only the dirty field was written.
+        Device read = get(m_entityStore.read(Device.class, device.getId()));
+        assertEquals("switch", read.getName());
+        assertEquals("rack 1", read.getLocation());
+        assertTrue(device.getDirtyFields().isEmpty());
+
+        device.setLocation("rack 3");
+        m_entityStore.update(device);
+
+        assertEquals("rack 3", get(m_entityStore.read(Device.class, device.getId())).getLocation());
+
+    }
+
+    @Test
+    public void testDirtiedDuringUpdate() {
+
+        final Device device = m_entityStore.create(new Device("router", "rack 1"));
+
+        // A field dirtied after the update took the dirty fields (but before it was tracked) ...
+        device.setName("switch");
+        device.setOnDrain(new Runnable() {
+
+            @Override
+            public void run() {
+                device.setLocation("rack 2");
+            }
+        });
+
+        m_entityStore.update(device);
+
+        assertEquals("rack 1", get(m_entityStore.read(Device.class, device.getId())).getLocation());
+        assertTrue(device.getDirtyFields().contains("m_location"));
+
+        // ... is written by the next.
+        m_entityStore.update(device);
+
+        Device read = get(m_entityStore.read(Device.class, device.getId()));
+        assertEquals("switch", read.getName());
+        assertEquals("rack 2", read.getLocation());
+        assertTrue(device.getDirtyFields().isEmpty());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDirtyField() {
+        Device device = m_entityStore.create(new Device("router", "rack 1"));
+        device.markDirty("m_nmae");
+        m_entityStore.update(device);
+    }
+
+    @Test
+    public void testCounter() {
+
+        Device device = new Device("router", "rack 1");
+        device.setHits(5);
+        device = m_entityStore.create(device);
+
+        // Incremented without a read; The tracked instance is left as it was ...
+        m_entityStore.increment(Device.class, device.getId(), "hits", 10);
+        assertEquals(15, get(m_entityStore.read(Device.class, device.getId())).getHits());
+
+        // ... and an update of it writes only its own change.
+        device.setHits(device.getHits() + 1);
+        m_entityStore.update(device);
+
+        assertEquals(16, get(m_entityStore.read(Device.class, device.getId())).getHits());
+
+        m_entityStore.increment(Device.class, device.getId(), "hits", -6);
+        assertEquals(10, get(m_entityStore.read(Device.class, device.getId())).getHits());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncrementNonCounter() {
+        m_entityStore.increment(Device.class, UUID.randomUUID(), "name", 1);
+    }
+
+    @Test
+    public void testTTL() throws InterruptedException {
+
+        Address address = new Address("Dove Flight", "San Antonio", "78250");
+        m_entityStore.create(address, 2);
+        assertTrue(m_entityStore.read(Address.class, address.getId()).isPresent());
+
+        Thread.sleep(3000);
+
+        assertFalse(m_entityStore.read(Address.class, address.getId()).isPresent());
+    }
+
+    @Test
+    public void testTTLOfCascaded() throws InterruptedException {
+
+        // Tickets expire (with their index rows), the queue that created them by cascade doesn't ...
+        Queue support = new Queue("support");
+        Ticket ticket = new Ticket(UUID.randomUUID().toString());
+        support.getTickets().add(ticket);
+        m_entityStore.create(support);
+
+        // ... unless it's given a time-to-live of its own, (its relation rows expiring with it).
+        Queue sales = new Queue("sales");
+        sales.getTickets().add(m_entityStore.create(new Ticket(UUID.randomUUID().toString())));
+        m_entityStore.create(sales, 2);
+
+        assertTrue(m_entityStore.read(Ticket.class, ticket.getId()).isPresent());
+        assertEquals(1, m_entityStore.count(Ticket.class, "summary", ticket.getSummary()));
+        assertTrue(m_entityStore.readRelationIDs(Queue.class, sales.getId(), "m_tickets").iterator().hasNext());
+
+        Thread.sleep(3000);
+
+        assertFalse(m_entityStore.read(Ticket.class, ticket.getId()).isPresent());
+        assertEquals(0, m_entityStore.count(Ticket.class, "summary", ticket.getSummary()));
+        assertTrue(m_entityStore.read(Queue.class, support.getId()).isPresent());
+        assertTrue(m_entityStore.readRelationIDs(Queue.class, support.getId(), "m_tickets").iterator().hasNext());
+
+        assertFalse(m_entityStore.read(Queue.class, sales.getId()).isPresent());
+        assertFalse(m_entityStore.readRelationIDs(Queue.class, sales.getId(), "m_tickets").iterator().hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTTLWithCountedIndex() {
+        m_entityStore.create(new Ballot("Thomas Anderson", "Red"), 60);
+    }
+
+    @Test
+    public void testEmbedded() {
+
+        Phone work = new Phone("work", "555-0100", 42);
+        Phone home = new Phone("home", "555-0199", null);
+
+        Account account = new Account("Initech");
+        account.getPhones().add(work);
+        m_entityStore.create(account);
+
+        Account read = get(m_entityStore.read(Account.class, account.getId()));
+
+        assertEquals(Sets.newHashSet(work), read.getPhones());
+
+        read.getPhones().remove(work);
+        read.getPhones().add(home);
+        m_entityStore.update(read);
+
+        read = get(m_entityStore.read(Account.class, account.getId()));
+
+        assertEquals(Sets.newHashSet(home), read.getPhones());
+
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testUpdateWithUnpersistedRelations() {
 
@@ -261,6 +590,251 @@ public class CassandraStorageTestITCase {
 
     }
 
+    @Test
+    public void testWithCompositeIndex() {
+
+        Address address = m_entityStore.create(new Address("Elm Street", "Springwood", "43210"));
+        Address neighbor = m_entityStore.create(new Address("Elm Street", "Springwood", "43211"));
+
+        Map<String, Object> values = Maps.newHashMap();
+        values.put("city", "Springwood");
+        values.put("zipcode", "43210");
+
+        Collection<Address> addresses = m_entityStore.read(Address.class, values);
+
+        assertTrue(addresses.contains(address));
+        assertFalse(addresses.contains(neighbor));
+
+        address.setZipcode("43212");
+        m_entityStore.update(address);
+
+        assertFalse(m_entityStore.read(Address.class, values).contains(address));
+        values.put("zipcode", "43212");
+        assertTrue(m_entityStore.read(Address.class, values).contains(address));
+
+        m_entityStore.delete(address);
+
+        assertFalse(m_entityStore.read(Address.class, values).contains(address));
+
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadWithoutCompositeIndex() {
+        Map<String, Object> values = Maps.newHashMap();
+        values.put("street", "Elm Street");
+        values.put("city", "Springwood");
+        m_entityStore.read(Address.class, values);
+    }
+
+    @Test
+    public void testReadRange() {
+
+        long base = System.currentTimeMillis();
+        List<Event> events = Lists.newArrayList();
+
+        for (int i = 0; i < 10; i++) {
+            events.add(m_entityStore.create(new Event("event" + i, base + i, new Date(base))));
+        }
+
+        // Spans several pages, (the last of which may be empty).
+        List<Event> results = Lists.newArrayList();
+        Page<Event> page = m_entityStore.readRange(Event.class, "sequence", base + 2, base + 7, 4);
+
+        while (true) {
+            results.addAll(page.getResults());
+            if (!page.hasNext()) break;
+            page = page.next();
+        }
+
+        assertEquals(6, results.size());
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(events.get(i + 2).getId(), results.get(i).getId());
+        }
+
+        // Updates move the entity within the index.
+        Event moved = events.get(0);
+        moved.setSequence(base + 5);
+        m_entityStore.update(moved);
+
+        assertEquals(2, m_entityStore.read(Event.class, "sequence", base + 5).size());
+        assertEquals(0, m_entityStore.read(Event.class, "sequence", base).size());
+
+    }
+
+    @Test
+    public void testReadPeriodicRange() {
+
+        long day = 86400000L;
+        long base = (System.currentTimeMillis() / day) * day;
+        List<Event> events = Lists.newArrayList();
+
+        // Two per day, over five days.
+        for (int i = 0; i < 10; i++) {
+            events.add(m_entityStore.create(new Event("event" + i, i, new Date(base + (i * day / 2)))));
+        }
+
+        List<Event> results = Lists.newArrayList();
+        Page<Event> page = m_entityStore.readRange(
+                Event.class,
+                "occurred",
+                new Date(base + day),
+                new Date(base + (3 * day) + 1),
+                3);
+
+        while (true) {
+            results.addAll(page.getResults());
+            if (!page.hasNext()) break;
+            page = page.next();
+        }
+
+        assertEquals(5, results.size());
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(events.get(i + 2).getId(), results.get(i).getId());
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnboundedPeriodicRange() {
+        m_entityStore.readRange(Event.class, "occurred", null, new Date(), 10);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadRangeWithoutOrderedIndex() {
+        m_entityStore.readRange(User.class, "email", "a", "z", 10);
+    }
+
+    @Test
+    public void testWithElementIndex() {
+
+        String suffix = "-" + UUID.randomUUID();
+        Article article = m_entityStore.create(new Article("Red pill", "monday" + suffix, "tuesday" + suffix));
+
+        assertEquals(article.getId(), getOnlyElement(m_entityStore.read(Article.class, "tags", "monday" + suffix)).getId());
+
+        article.getTags().remove("monday" + suffix);
+        article.getTags().add("sunday" + suffix);
+        m_entityStore.update(article);
+
+        assertEquals(0, m_entityStore.read(Article.class, "tags", "monday" + suffix).size());
+        assertEquals(article.getId(), getOnlyElement(m_entityStore.read(Article.class, "tags", "sunday" + suffix)).getId());
+        assertEquals(article.getId(), getOnlyElement(m_entityStore.read(Article.class, "tags", "tuesday" + suffix)).getId());
+
+        m_entityStore.delete(article);
+
+        assertEquals(0, m_entityStore.read(Article.class, "tags", "sunday" + suffix).size());
+
+    }
+
+    @Test
+    public void testReadProjection() {
+
+        String email = "trinity-" + UUID.randomUUID() + "@matrix.com";
+        Contact contact = m_entityStore.create(new Contact("Trinity", "Unknown", email, "555-0100"));
+
+        Contact projected = getOnlyElement(m_entityStore.readProjection(Contact.class, "email", email));
+
+        assertEquals(contact.getId(), projected.getId());
+        assertEquals("Trinity", projected.getGiven());
+        assertEquals("Unknown", projected.getSurname());
+        assertNull(projected.getPhone());
+
+        // Covered columns are kept current.
+        contact.setSurname("Anderson");
+        m_entityStore.update(contact);
+
+        projected = getOnlyElement(m_entityStore.readProjection(Contact.class, "email", email));
+
+        assertEquals("Anderson", projected.getSurname());
+
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadProjectionWithoutCoveringIndex() {
+        m_entityStore.readProjection(Article.class, "tags", "monday");
+    }
+
+    @Test
+    public void testWithShardedIndex() {
+
+        String team = "Nebuchadnezzar-" + UUID.randomUUID();
+        List<UUID> ids = Lists.newArrayList();
+
+        for (int i = 0; i < 20; i++) {
+            ids.add(m_entityStore.create(new Member("crew" + i, team)).getId());
+        }
+
+        Collection<Member> members = m_entityStore.read(Member.class, "team", team);
+
+        assertEquals(20, members.size());
+
+        for (Member member : members) {
+            assertTrue(ids.contains(member.getId()));
+        }
+
+        Member moved = members.iterator().next();
+        moved.setTeam("Logos-" + UUID.randomUUID());
+        m_entityStore.update(moved);
+
+        assertEquals(19, m_entityStore.read(Member.class, "team", team).size());
+
+    }
+
+    @Test
+    public void testCount() {
+
+        String choice = "Red-" + UUID.randomUUID();
+        List<Ballot> ballots = Lists.newArrayList();
+
+        for (int i = 0; i < 10; i++) {
+            ballots.add(m_entityStore.create(new Ballot("voter" + i, choice)));
+        }
+
+        assertEquals(10, m_entityStore.count(Ballot.class, "choice", choice));
+        assertEquals(10, m_entityStore.approximateCount(Ballot.class, "choice", choice));
+
+        Ballot changed = ballots.get(0);
+        changed.setChoice("Blue-" + UUID.randomUUID());
+        m_entityStore.update(changed);
+        m_entityStore.delete(ballots.get(1));
+
+        assertEquals(8, m_entityStore.count(Ballot.class, "choice", choice));
+        assertEquals(8, m_entityStore.approximateCount(Ballot.class, "choice", choice));
+        assertEquals(1, m_entityStore.approximateCount(Ballot.class, "choice", changed.getChoice()));
+
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testApproximateCountOfUncountedIndex() {
+        m_entityStore.approximateCount(User.class, "email", "neo@matrix.com");
+    }
+
+    @Test
+    public void testIndexBuilder() throws IOException {
+
+        persistSampleUser();
+
+        // Remove the index row the create wrote, so that there is something to build.
+        CassandraEntityStore store = (CassandraEntityStore) m_entityStore;
+        Schema schema = store.getSchema(User.class);
+        String tableName = Schema.indexTableName(schema.getTableName(), "email");
+
+        store.executeStatement(schema, delete().from(tableName).where(eq("email", m_sampleUser.getEmail())), ConsistencyLevel.ALL);
+
+        IndexBuilder builder = new IndexBuilder(store, User.class, "email").setSplits(8);
+
+        assertTrue(builder.verify() > 0);
+        assertTrue(builder.build() > 0);
+        assertEquals(8, builder.getRangesCompleted());
+        assertEquals(0, builder.verify());
+
+        User user = getUser(m_entityStore.read(User.class, "email", m_sampleUser.getEmail()), m_sampleUser.getId());
+        assertEquals(m_sampleUser.getSurname(), user.getSurname());
+
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testCreateOnClosedStore() throws IOException {
         m_entityStore.close();
@@ -315,6 +889,31 @@ public class CassandraStorageTestITCase {
 
     }
 
+    @Test
+    public void testUpdateReplacedMapColumn() {
+
+        User sample = persistSampleUser();
+
+        // Replaced, (rather than changed); Written whole.
+        Map<String, String> favorites = Maps.newHashMap();
+        favorites.put("beverage", "tea");
+        sample.setFavorites(favorites);
+
+        m_entityStore.update(sample);
+
+        User read = get(m_entityStore.read(User.class, sample.getId()));
+        assertEquals(favorites, read.getFavorites());
+
+        // Changes to the replacement are recorded from then on.
+        sample.getFavorites().put("meat", "lamb");
+        m_entityStore.update(sample);
+
+        read = get(m_entityStore.read(User.class, sample.getId()));
+        assertEquals(2, read.getFavorites().size());
+        assertEquals("lamb", read.getFavorites().get("meat"));
+
+    }
+
     @Test
     public void testUpdateMapColumnAllStrategy() {
 
@@ -408,6 +1007,40 @@ public class CassandraStorageTestITCase {
 
     }
 
+    @Test
+    public void testUpdateListElements() { // ELEMENT update strategy
+
+        Journal sample = m_entityStore.create(new Journal("captain's log"));
+
+        sample.getEntries().add("created");
+        m_entityStore.update(sample);
+
+        // Append
+        sample.getEntries().addAll(Arrays.asList("validated", "renamed"));
+        m_entityStore.update(sample);
+
+        // Prepend
+        sample.getEntries().add(0, "invited");
+        m_entityStore.update(sample);
+
+        // Set by index
+        sample.getEntries().set(2, "verified");
+        m_entityStore.update(sample);
+
+        Journal read = get(m_entityStore.read(Journal.class, sample.getId()));
+
+        assertEquals(Arrays.asList("invited", "created", "verified", "renamed"), read.getEntries());
+
+        // Anything else is rewritten
+        read.getEntries().remove(1);
+        m_entityStore.update(read);
+
+        assertEquals(
+                Arrays.asList("invited", "verified", "renamed"),
+                get(m_entityStore.read(Journal.class, sample.getId())).getEntries());
+
+    }
+
     @Test
     public void testDeleteWithIndexes() {
 
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.opennms.lucidity.ConsistencyLevel.LOCAL_QUORUM;
+import static com.opennms.lucidity.ConsistencyLevel.ONE;
+import static com.opennms.lucidity.ConsistencyLevel.QUORUM;
+import static com.opennms.lucidity.ConsistencyLevel.TWO;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class ConsistencyPolicyTest {
+
+    @Test
+    public void testFallback() {
+
+        ConsistencyPolicy policy = new ConsistencyPolicy(QUORUM);
+
+        assertEquals(QUORUM, policy.getRead(User.class));
+        assertEquals(QUORUM, policy.getWrite(User.class));
+        assertEquals(QUORUM, policy.getIndexRead(User.class));
+
+    }
+
+    @Test
+    public void testPerType() {
+
+        ConsistencyPolicy policy = new ConsistencyPolicy(QUORUM);
+        policy.setRead(User.class, ONE);
+        policy.setWrite(LOCAL_QUORUM);
+
+        assertEquals(ONE, policy.getRead(User.class));
+        assertEquals(QUORUM, policy.getRead(Address.class));
+        assertEquals(LOCAL_QUORUM, policy.getWrite(User.class));
+        assertEquals(LOCAL_QUORUM, policy.getWrite(Address.class));
+
+        // Index reads follow the type's read level, unless set.
+        assertEquals(ONE, policy.getIndexRead(User.class));
+
+        policy.setIndexRead(TWO);
+        assertEquals(TWO, policy.getIndexRead(User.class));
+
+        policy.setIndexRead(User.class, LOCAL_QUORUM);
+        assertEquals(LOCAL_QUORUM, policy.getIndexRead(User.class));
+        assertEquals(TWO, policy.getIndexRead(Address.class));
+
+        // Unset
+        policy.setRead(User.class, null);
+        assertEquals(QUORUM, policy.getRead(User.class));
+
+    }
+
+}
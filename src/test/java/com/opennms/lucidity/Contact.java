@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.opennms.lucidity.annotations.IndexType.INVERTED;
+
+import java.util.UUID;
+
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Index;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** An entity with a covering index. */
+@Entity
+@Table(name = "contacts")
+class Contact {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "given")
+    private String m_given;
+
+    @Column(name = "surname")
+    private String m_surname;
+
+    @Index(type = INVERTED, covering = { "given", "surname" })
+    @Column(name = "email")
+    private String m_email;
+
+    @Column(name = "phone")
+    private String m_phone;
+
+    Contact() {
+
+    }
+
+    Contact(String given, String surname, String email, String phone) {
+        m_given = given;
+        m_surname = surname;
+        m_email = email;
+        m_phone = phone;
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getGiven() {
+        return m_given;
+    }
+
+    String getSurname() {
+        return m_surname;
+    }
+
+    void setSurname(String surname) {
+        m_surname = surname;
+    }
+
+    String getEmail() {
+        return m_email;
+    }
+
+    String getPhone() {
+        return m_phone;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s %s, %s]", getClass().getSimpleName(), getGiven(), getSurname(), getEmail());
+    }
+
+}
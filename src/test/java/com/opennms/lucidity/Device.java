@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.collect.Sets;
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Counter;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** An entity that tracks its own dirty fields. */
+@Entity
+@Table(name = "devices")
+class Device implements DirtyTracking {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "name")
+    private String m_name;
+
+    @Column(name = "location")
+    private String m_location;
+
+    @Counter
+    @Column(name = "hits")
+    private long m_hits;
+
+    private final Set<String> m_dirty = Sets.newHashSet();
+    private Runnable m_onDrain;
+
+    Device() {
+
+    }
+
+    Device(String name, String location) {
+        setName(name);
+        setLocation(location);
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    void setName(String name) {
+        m_name = name;
+        markDirty("m_name");
+    }
+
+    String getLocation() {
+        return m_location;
+    }
+
+    void setLocation(String location) {
+        m_location = location;
+        markDirty("m_location");
+    }
+
+    /** Assigns the location without marking it dirty. */
+    void setLocationQuietly(String location) {
+        m_location = location;
+    }
+
+    long getHits() {
+        return m_hits;
+    }
+
+    void setHits(long hits) {
+        m_hits = hits;
+        markDirty("m_hits");
+    }
+
+    /** Marks a field dirty; For testing, the name of one that isn't a column. */
+    synchronized void markDirty(String fieldName) {
+        m_dirty.add(fieldName);
+    }
+
+    synchronized Set<String> getDirtyFields() {
+        return Sets.newHashSet(m_dirty);
+    }
+
+    /** Runs a task once the next drain has taken the dirty fields, (as if it ran concurrently). */
+    void setOnDrain(Runnable onDrain) {
+        m_onDrain = onDrain;
+    }
+
+    @Override
+    public Set<String> drainDirtyFields() {
+
+        Set<String> drained;
+
+        synchronized (this) {
+            drained = Sets.newHashSet(m_dirty);
+            m_dirty.clear();
+        }
+
+        if (m_onDrain != null) {
+            Runnable onDrain = m_onDrain;
+            m_onDrain = null;
+            onDrain.run();
+        }
+
+        return drained;
+    }
+
+    @Override
+    public synchronized void markDirtyFields(Set<String> fieldNames) {
+        m_dirty.addAll(fieldNames);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %s]", getClass().getSimpleName(), getName(), getLocation());
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.opennms.lucidity.annotations.IndexType.ORDERED;
+
+import java.util.Date;
+import java.util.UUID;
+
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Index;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** An entity with ordered indexes, one of them partitioned by day. */
+@Entity
+@Table(name = "events")
+class Event {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "name")
+    private String m_name;
+
+    @Index(type = ORDERED, buckets = 4)
+    @Column(name = "sequence")
+    private long m_sequence;
+
+    @Index(type = ORDERED, buckets = 4, period = 86400000L)
+    @Column(name = "occurred")
+    private Date m_occurred;
+
+    Event() {
+
+    }
+
+    Event(String name, long sequence, Date occurred) {
+        m_name = name;
+        m_sequence = sequence;
+        m_occurred = occurred;
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    long getSequence() {
+        return m_sequence;
+    }
+
+    void setSequence(long sequence) {
+        m_sequence = sequence;
+    }
+
+    Date getOccurred() {
+        return m_occurred;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %d, %s]", getClass().getSimpleName(), getName(), getSequence(), getOccurred());
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.opennms.lucidity.annotations.IndexType.INVERTED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Index;
+
+
+public class IndexBuilderTest {
+
+    @Entity static class WithIndexes {
+        @Id private UUID id;
+        @Index(type=INVERTED) @Column String name;
+        @Index(type=INVERTED, counted=true) @Column String status;
+        @Column String location;
+    }
+
+    @Test
+    public void testIndexedColumn() {
+        assertEquals("name", IndexBuilder.getIndexedColumn(Schema.fromClass(WithIndexes.class), "name").getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnindexedColumn() {
+        IndexBuilder.getIndexedColumn(Schema.fromClass(WithIndexes.class), "location");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountedIndex() {
+        // Its counts would ignore every row the build wrote.
+        IndexBuilder.getIndexedColumn(Schema.fromClass(WithIndexes.class), "status");
+    }
+
+    @Test
+    public void testRangesCoverRing() {
+
+        for (int splits : new int[] { 1, 3, 256 }) {
+            List<BigInteger[]> ranges = IndexBuilder.getRanges(splits);
+
+            assertEquals(splits, ranges.size());
+            assertEquals(IndexBuilder.MIN_TOKEN, ranges.get(0)[0]);
+            assertEquals(IndexBuilder.MAX_TOKEN, ranges.get(splits - 1)[1]);
+
+            for (int i = 0; i < ranges.size(); i++) {
+                assertTrue(ranges.get(i)[0].compareTo(ranges.get(i)[1]) < 0);
+
+                // Contiguous; Each range starts (exclusive) where the last ended (inclusive).
+                if (i > 0) assertEquals(ranges.get(i - 1)[1], ranges.get(i)[0]);
+            }
+        }
+
+    }
+
+    @Test
+    public void testRangesAreStable() {
+
+        // Checkpoints identify ranges by their bounds, so the same split count must always yield the same ranges.
+        List<BigInteger[]> a = IndexBuilder.getRanges(64), b = IndexBuilder.getRanges(64);
+
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.get(i)[0], b.get(i)[0]);
+            assertEquals(a.get(i)[1], b.get(i)[1]);
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.EmbeddedCollection;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** An entity with a list updated element by element. */
+@Entity
+@Table(name = "journals")
+class Journal {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "name")
+    private String m_name;
+
+    @EmbeddedCollection
+    @Column(name = "entries")
+    private List<String> m_entries = Lists.newArrayList();
+
+    Journal() {
+
+    }
+
+    Journal(String name) {
+        m_name = name;
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    List<String> getEntries() {
+        return m_entries;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %s]", getClass().getSimpleName(), getName(), getEntries());
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.opennms.lucidity.annotations.IndexType.INVERTED;
+
+import java.util.UUID;
+
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Index;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** An entity with a sharded index. */
+@Entity
+@Table(name = "members")
+class Member {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "name")
+    private String m_name;
+
+    @Index(type = INVERTED, shards = 4)
+    @Column(name = "team")
+    private String m_team;
+
+    Member() {
+
+    }
+
+    Member(String name, String team) {
+        m_name = name;
+        m_team = team;
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    String getTeam() {
+        return m_team;
+    }
+
+    void setTeam(String team) {
+        m_team = team;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %s]", getClass().getSimpleName(), getName(), getTeam());
+    }
+
+}
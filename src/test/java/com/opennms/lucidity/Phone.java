@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import com.google.common.base.Objects;
+import com.opennms.lucidity.annotations.Column;
+
+
+/** Embedded in {@link Account}. */
+class Phone {
+
+    @Column(name = "kind")
+    private String m_kind;
+
+    @Column(name = "number")
+    private String m_number;
+
+    @Column(name = "extension")
+    private Integer m_extension;
+
+    Phone() {
+
+    }
+
+    Phone(String kind, String number, Integer extension) {
+        m_kind = kind;
+        m_number = number;
+        m_extension = extension;
+    }
+
+    String getKind() {
+        return m_kind;
+    }
+
+    String getNumber() {
+        return m_number;
+    }
+
+    Integer getExtension() {
+        return m_extension;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %s, %s]", getClass().getSimpleName(), getKind(), getNumber(), getExtension());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getKind(), getNumber(), getExtension());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Phone)) return false;
+        Phone phone = (Phone) other;
+        return Objects.equal(getKind(), phone.getKind())
+                && Objects.equal(getNumber(), phone.getNumber())
+                && Objects.equal(getExtension(), phone.getExtension());
+    }
+
+}
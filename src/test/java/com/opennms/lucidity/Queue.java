@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import java.util.Collection;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import com.opennms.lucidity.annotations.CascadeType;
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.OneToMany;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** Creates its {@link Ticket}s by cascade, (which expire on their own). */
+@Entity
+@Table(name = "queues")
+class Queue {
+
+    @Id
+    private UUID m_id;
+
+    @Column(name = "name")
+    private String m_name;
+
+    @OneToMany(cascade = { CascadeType.CREATE })
+    private Collection<Ticket> m_tickets = Lists.newArrayList();
+
+    Queue() {
+
+    }
+
+    Queue(String name) {
+        m_name = name;
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    Collection<Ticket> getTickets() {
+        return m_tickets;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, tickets=%s]", getClass().getSimpleName(), getName(), getTickets());
+    }
+
+}
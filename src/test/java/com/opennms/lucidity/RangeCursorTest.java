@@ -0,0 +1,231 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.opennms.lucidity.RangeCursor.IndexEntry;
+
+
+public class RangeCursorTest {
+
+    private static final Comparator<IndexEntry> BY_VALUE = new Comparator<IndexEntry>() {
+
+        @Override
+        public int compare(IndexEntry o1, IndexEntry o2) {
+            return ((Integer) o1.getValue()).compareTo((Integer) o2.getValue());
+        }
+    };
+
+    /** Index entries of each bucket, in value order (as Cassandra would store them). */
+    private List<List<IndexEntry>> newIndex(int buckets, int... values) {
+        List<List<IndexEntry>> index = Lists.newArrayList();
+
+        for (int i = 0; i < buckets; i++) {
+            index.add(Lists.<IndexEntry> newArrayList());
+        }
+
+        for (int value : values) {
+            UUID id = UUID.randomUUID();
+            index.get(Schema.bucketOf(id, buckets)).add(new IndexEntry(value, id));
+        }
+
+        for (List<IndexEntry> bucket : index) {
+            Collections.sort(bucket, BY_VALUE);
+        }
+
+        return index;
+    }
+
+    private List<IndexEntry> readPage(List<List<IndexEntry>> index, RangeCursor cursor, int pageSize) {
+        return readPage(index, cursor, pageSize, 0);
+    }
+
+    /** Reads one page (of one period), the way the store queries each bucket. */
+    private List<IndexEntry> readPage(List<List<IndexEntry>> index, RangeCursor cursor, int pageSize, long period) {
+        List<List<IndexEntry>> entries = Lists.newArrayList();
+        boolean[] complete = new boolean[cursor.getBuckets()];
+
+        for (int i = 0; i < cursor.getBuckets(); i++) {
+
+            if (cursor.isExhausted(i)) {
+                entries.add(null);
+                continue;
+            }
+
+            int limit = cursor.getSkip(i) + pageSize, read = 0;
+            List<IndexEntry> bucketEntries = Lists.newArrayList();
+
+            for (IndexEntry entry : index.get(i)) {
+                int value = (Integer) entry.getValue();
+
+                if (cursor.getFrom(i) != null && value < (Integer) cursor.getFrom(i)) continue;
+                if (cursor.getEnd() != null && value > (Integer) cursor.getEnd()) continue;
+                if (period > 0 && Schema.periodOf(value, period) != cursor.getPeriod()) continue;
+                if (read == limit) break;
+
+                if (read++ >= cursor.getSkip(i)) bucketEntries.add(entry);
+            }
+
+            entries.add(bucketEntries);
+            complete[i] = read < limit;
+        }
+
+        return cursor.advance(entries, complete, pageSize);
+    }
+
+    private List<IndexEntry> readAll(List<List<IndexEntry>> index, RangeCursor cursor, int pageSize) {
+        return readAll(index, cursor, pageSize, 0);
+    }
+
+    /** Reads every page; Periods are read in turn until each page is full, (as the store does). */
+    private List<IndexEntry> readAll(List<List<IndexEntry>> index, RangeCursor cursor, int pageSize, long period) {
+        List<IndexEntry> results = Lists.newArrayList();
+
+        while (!cursor.isExhausted()) {
+            List<IndexEntry> page = Lists.newArrayList();
+
+            do {
+                page.addAll(readPage(index, cursor, pageSize - page.size(), period));
+            } while (page.size() < pageSize && cursor.nextPeriod());
+
+            assertTrue(page.size() <= pageSize);
+            results.addAll(page);
+        }
+
+        return results;
+    }
+
+    private void assertOrdered(List<IndexEntry> entries) {
+        for (int i = 1; i < entries.size(); i++) {
+            assertTrue(BY_VALUE.compare(entries.get(i - 1), entries.get(i)) <= 0);
+        }
+    }
+
+    @Test
+    public void testAllPages() {
+
+        List<List<IndexEntry>> index = newIndex(4, 5, 3, 9, 1, 7, 2, 8, 6, 4, 0);
+        List<IndexEntry> results = readAll(index, new RangeCursor(4, null, null), 3);
+
+        assertEquals(10, results.size());
+        assertOrdered(results);
+
+    }
+
+    @Test
+    public void testRange() {
+
+        List<List<IndexEntry>> index = newIndex(4, 5, 3, 9, 1, 7, 2, 8, 6, 4, 0);
+        List<IndexEntry> results = readAll(index, new RangeCursor(4, 3, 7), 2);
+
+        assertEquals(5, results.size());
+        assertEquals(3, results.get(0).getValue());
+        assertEquals(7, results.get(4).getValue());
+        assertOrdered(results);
+
+    }
+
+    @Test
+    public void testRepeatedValues() {
+
+        // Many entries sharing a value, spanning pages within each bucket.
+        List<List<IndexEntry>> index = newIndex(2, 1, 2, 2, 2, 2, 2, 2, 2, 2, 3);
+        List<IndexEntry> results = readAll(index, new RangeCursor(2, null, null), 2);
+
+        assertEquals(10, results.size());
+        assertOrdered(results);
+
+        // Each entry exactly once
+        List<UUID> ids = Lists.newArrayList();
+        for (IndexEntry entry : results) {
+            assertTrue(!ids.contains(entry.getId()));
+            ids.add(entry.getId());
+        }
+
+    }
+
+    @Test
+    public void testEmptyRange() {
+
+        RangeCursor cursor = new RangeCursor(4, 100, 200);
+
+        assertEquals(0, readPage(newIndex(4, 1, 2, 3), cursor, 10).size());
+        assertTrue(cursor.isExhausted());
+
+    }
+
+    @Test
+    public void testPeriods() {
+
+        List<List<IndexEntry>> index = newIndex(4, 12, 5, 27, 3, 18, 21, 9, 14, 24, 6, 29, 11, 0, 16, 23, 8);
+        RangeCursor cursor = new RangeCursor(4, 5, 24, Schema.periodOf(5, 10), Schema.periodOf(24, 10));
+        List<IndexEntry> results = readAll(index, cursor, 3, 10);
+
+        assertEquals(12, results.size());
+        assertEquals(5, results.get(0).getValue());
+        assertEquals(24, results.get(11).getValue());
+        assertOrdered(results);
+
+    }
+
+    @Test
+    public void testEmptyPeriods() {
+
+        // Periods without entries are passed over, (rather than returned as empty pages).
+        List<List<IndexEntry>> index = newIndex(2, 1, 2, 55, 56);
+        RangeCursor cursor = new RangeCursor(2, 0, 59, 0, 5);
+        List<IndexEntry> results = readPage(index, cursor, 4, 10);
+
+        while (results.size() < 4 && cursor.nextPeriod()) {
+            results.addAll(readPage(index, cursor, 4 - results.size(), 10));
+        }
+
+        assertEquals(4, results.size());
+        assertOrdered(results);
+
+        // A bucket filled to the limit can't be known complete until it's read again.
+        if (!cursor.isExhausted()) {
+            assertEquals(0, readPage(index, cursor, 4, 10).size());
+        }
+
+        assertTrue(cursor.isExhausted());
+
+    }
+
+    @Test
+    public void testPeriodOf() {
+        assertEquals(0, Schema.periodOf(9, 10));
+        assertEquals(1, Schema.periodOf(10L, 10));
+        assertEquals(-1, Schema.periodOf(-1, 10));
+        assertEquals(-1, Schema.periodOf(-10, 10));
+        assertEquals(-2, Schema.periodOf(-11, 10));
+        assertEquals(-1, Schema.periodOf(-0.5, 10));
+        assertEquals(2, Schema.periodOf(new Date(172800000L), 86400000L));
+    }
+
+}
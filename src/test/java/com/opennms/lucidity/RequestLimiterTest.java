@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.opennms.lucidity.RequestLimiter.Permit;
+
+
+public class RequestLimiterTest {
+
+    private RequestLimiter m_limiter;
+
+    @Before
+    public void setUp() {
+        m_limiter = new RequestLimiter();
+    }
+
+    @Test
+    public void testUnlimited() {
+
+        for (int i = 0; i < 1000; i++) {
+            m_limiter.acquire(User.class);
+        }
+
+        assertEquals(1000, m_limiter.getInFlight());
+        assertEquals(1000, m_limiter.getInFlight(User.class));
+        assertEquals(0, m_limiter.getInFlight(Address.class));
+        assertEquals(1000, m_limiter.getAdmitted());
+
+    }
+
+    @Test
+    public void testFailFast() {
+
+        m_limiter.setMaxInFlight(2);
+        m_limiter.setAdmissionMode(AdmissionMode.FAIL_FAST);
+
+        Permit permit = m_limiter.acquire(User.class);
+        m_limiter.acquire(Address.class);
+
+        try {
+            m_limiter.acquire(User.class);
+            throw new AssertionError("admitted beyond limit");
+        }
+        catch (RequestRejectedException e) {
+            assertEquals(1, m_limiter.getRejected());
+        }
+
+        // A rejection must not leak the per-type permit it entered first.
+        assertEquals(1, m_limiter.getInFlight(User.class));
+
+        permit.release();
+        permit.release();   // Idempotent
+
+        assertEquals(1, m_limiter.getInFlight());
+        m_limiter.acquire(User.class);
+        assertEquals(2, m_limiter.getInFlight());
+
+    }
+
+    @Test
+    public void testPerTypeLimit() {
+
+        m_limiter.setMaxInFlight(User.class, 1);
+        m_limiter.setAdmissionMode(AdmissionMode.FAIL_FAST);
+
+        m_limiter.acquire(User.class);
+        m_limiter.acquire(Address.class);
+        m_limiter.acquire(Address.class);
+
+        try {
+            m_limiter.acquire(User.class);
+            throw new AssertionError("admitted beyond limit");
+        }
+        catch (RequestRejectedException e) {
+            /* expected */
+        }
+
+        assertEquals(3, m_limiter.getInFlight());
+        assertEquals(1, m_limiter.getMaxInFlight(User.class));
+
+    }
+
+    @Test(timeout = 10000)
+    public void testBlocking() throws Exception {
+
+        m_limiter.setMaxInFlight(1);
+
+        final Permit permit = m_limiter.acquire(User.class);
+        final CountDownLatch admitted = new CountDownLatch(1);
+
+        Thread waiter = new Thread() {
+
+            @Override
+            public void run() {
+                m_limiter.acquire(User.class);
+                admitted.countDown();
+            }
+        };
+        waiter.start();
+
+        assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+
+        permit.release();
+
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, m_limiter.getWaited());
+        assertTrue(m_limiter.getMaxWaitTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(m_limiter.getMaxWaitTime(TimeUnit.NANOSECONDS), m_limiter.getTotalWaitTime(TimeUnit.NANOSECONDS));
+
+    }
+
+    @Test(timeout = 10000)
+    public void testRaisingLimitWakesWaiters() throws Exception {
+
+        m_limiter.setMaxInFlight(1);
+        m_limiter.acquire(User.class);
+
+        final CountDownLatch admitted = new CountDownLatch(1);
+
+        new Thread() {
+
+            @Override
+            public void run() {
+                m_limiter.acquire(User.class);
+                admitted.countDown();
+            }
+        }.start();
+
+        assertFalse(admitted.await(50, TimeUnit.MILLISECONDS));
+
+        m_limiter.setMaxInFlight(RequestLimiter.UNLIMITED);
+
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+
+    }
+
+}
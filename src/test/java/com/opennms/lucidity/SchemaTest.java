@@ -16,20 +16,44 @@
 package com.opennms.lucidity;
 
 
+import static com.opennms.lucidity.annotations.IndexType.ELEMENTS;
 import static com.opennms.lucidity.annotations.IndexType.INVERTED;
+import static com.opennms.lucidity.annotations.IndexType.KEYS;
+import static com.opennms.lucidity.annotations.IndexType.NATIVE;
+import static com.opennms.lucidity.annotations.IndexType.ORDERED;
+import static com.opennms.lucidity.annotations.RelationStorage.ID_SET;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.junit.Test;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.opennms.lucidity.Schema.ColumnSpec;
+import com.opennms.lucidity.Schema.EmbeddedSpec;
 import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.CompositeIndex;
+import com.opennms.lucidity.annotations.Counter;
+import com.opennms.lucidity.annotations.Embedded;
 import com.opennms.lucidity.annotations.EmbeddedCollection;
 import com.opennms.lucidity.annotations.Entity;
 import com.opennms.lucidity.annotations.Id;
 import com.opennms.lucidity.annotations.Index;
+import com.opennms.lucidity.annotations.OneToMany;
+import com.opennms.lucidity.annotations.Table;
+import com.opennms.lucidity.annotations.UpdateStrategy;
 
 
 public class SchemaTest {
@@ -92,14 +116,323 @@ public class SchemaTest {
         Schema.fromClass(WithBadMapType.class);
     }
 
-    @Entity static class BadListColumn {
+    @Entity static class ElementListColumn {
         @Id private UUID id;
         @EmbeddedCollection List<Double> things;
     }
     
+    @Test
+    public void testElementListColumn() {
+        ColumnSpec colSpec = Schema.fromClass(ElementListColumn.class).getColumn("things");
+        assertEquals(UpdateStrategy.ELEMENT, colSpec.getCollectionUpdateStrategy());
+    }
+
+    @Entity static class WithNativeIndex {
+        @Id private UUID id;
+        @Index(type=NATIVE) @Column String status;
+        @Index(type=INVERTED) @Column String name;
+    }
+
+    @Test
+    public void testNativeIndexDDL() {
+        Schema schema = Schema.fromClass(WithNativeIndex.class);
+        String ddl = schema.toDDL();
+
+        assertTrue(ddl.contains("CREATE INDEX WithNativeIndex_status_idx ON WithNativeIndex (status);"));
+        assertFalse(ddl.contains("CREATE TABLE WithNativeIndex_status_idx"));
+        assertTrue(ddl.contains("CREATE TABLE WithNativeIndex_name_idx"));
+
+        assertFalse(schema.getColumn("status").hasIndexTable());
+        assertTrue(schema.getColumn("name").hasIndexTable());
+    }
+
+    @Entity
+    @CompositeIndex(columns = { "city", "zipcode" })
+    static class WithCompositeIndex {
+        @Id private UUID id;
+        @Column String city;
+        @Column String zipcode;
+        @Column int population;
+    }
+
+    @Test
+    public void testCompositeIndex() {
+        Schema schema = Schema.fromClass(WithCompositeIndex.class);
+
+        assertTrue(schema.toDDL().contains(
+                "CREATE TABLE WithCompositeIndex_city_zipcode_idx (city text, zipcode text, WithCompositeIndex_id uuid, PRIMARY KEY((city, zipcode), WithCompositeIndex_id));"));
+        assertNotNull(schema.getCompositeIndex(Sets.newHashSet("zipcode", "city")));
+        assertNull(schema.getCompositeIndex(Sets.newHashSet("city", "population")));
+    }
+
+    @Entity
+    @CompositeIndex(columns = { "city", "state" })
+    static class WithBadCompositeIndex {
+        @Id private UUID id;
+        @Column String city;
+        @Column String zipcode;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCompositeIndex() {
+        Schema.fromClass(WithBadCompositeIndex.class);
+    }
+
+    @Entity static class WithOrderedIndex {
+        @Id private UUID id;
+        @Index(type=ORDERED, buckets=8) @Column Date created;
+    }
+
+    @Test
+    public void testOrderedIndexDDL() {
+        assertTrue(Schema.fromClass(WithOrderedIndex.class).toDDL().contains(
+                "CREATE TABLE WithOrderedIndex_created_idx (bucket int, created timestamp, WithOrderedIndex_id uuid, PRIMARY KEY(bucket, created, WithOrderedIndex_id));"));
+    }
+
+    @Entity static class WithPeriodicIndex {
+        @Id private UUID id;
+        @Index(type=ORDERED, buckets=8, period=86400000L) @Column Date created;
+    }
+
+    @Test
+    public void testPeriodicIndexDDL() {
+        assertTrue(Schema.fromClass(WithPeriodicIndex.class).toDDL().contains(
+                "CREATE TABLE WithPeriodicIndex_created_idx (bucket int, period bigint, created timestamp, WithPeriodicIndex_id uuid, PRIMARY KEY((bucket, period), created, WithPeriodicIndex_id));"));
+    }
+
+    @Entity static class WithBadPeriodicIndex {
+        @Id private UUID id;
+        @Index(type=INVERTED, period=10) @Column int age;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadPeriodicIndex() {
+        Schema.fromClass(WithBadPeriodicIndex.class);
+    }
+
+    @Entity static class WithBadOrderedIndex {
+        @Id private UUID id;
+        @Index(type=ORDERED) @Column String name;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadOrderedIndex() {
+        Schema.fromClass(WithBadOrderedIndex.class);
+    }
+
+    @Entity static class WithElementIndexes {
+        @Id private UUID id;
+        @Index(type=ELEMENTS) @EmbeddedCollection Set<String> tags;
+        @Index(type=KEYS) @EmbeddedCollection Map<String, Integer> attributes;
+        @Index(type=ELEMENTS) @EmbeddedCollection Map<String, Integer> scores;
+    }
+
+    @Test
+    public void testElementIndexes() {
+        Schema schema = Schema.fromClass(WithElementIndexes.class);
+        String ddl = schema.toDDL();
+
+        assertTrue(ddl.contains("CREATE TABLE WithElementIndexes_tags_idx (tags text, "));
+        assertTrue(ddl.contains("CREATE TABLE WithElementIndexes_attributes_idx (attributes text, "));
+        assertTrue(ddl.contains("CREATE TABLE WithElementIndexes_scores_idx (scores int, "));
+
+        Map<String, Integer> values = Maps.newHashMap();
+        values.put("a", 1);
+        values.put("b", 1);
+
+        assertEquals(Sets.newHashSet("a", "b"), schema.getColumn("attributes").getIndexedValues(values));
+        assertEquals(Sets.newHashSet(1), schema.getColumn("scores").getIndexedValues(values));
+    }
+
+    @Entity static class WithKeysIndexedSet {
+        @Id private UUID id;
+        @Index(type=KEYS) @EmbeddedCollection Set<String> tags;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithKeysIndexedSet() {
+        Schema.fromClass(WithKeysIndexedSet.class);
+    }
+
+    @Entity static class WithElementsIndexedColumn {
+        @Id private UUID id;
+        @Index(type=ELEMENTS) @Column String name;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithElementsIndexedColumn() {
+        Schema.fromClass(WithElementsIndexedColumn.class);
+    }
+
+    @Entity static class WithCoveringIndex {
+        @Id private UUID id;
+        @Index(covering={"given", "age"}) @Column String email;
+        @Column String given;
+        @Column int age;
+    }
+
+    @Test
+    public void testCoveringIndexDDL() {
+        assertTrue(Schema.fromClass(WithCoveringIndex.class).toDDL().contains(
+                "CREATE TABLE WithCoveringIndex_email_idx (email text, WithCoveringIndex_id uuid, given text, age int, PRIMARY KEY(email, WithCoveringIndex_id));"));
+    }
+
+    @Entity static class WithBadCoveringIndex {
+        @Id private UUID id;
+        @Index(covering={"given", "tags"}) @Column String email;
+        @Column String given;
+        @EmbeddedCollection Set<String> tags;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCoveringIndex() {
+        Schema.fromClass(WithBadCoveringIndex.class);
+    }
+
+    @Entity static class WithShardedIndex {
+        @Id private UUID id;
+        @Index(shards=8) @Column String country;
+    }
+
+    @Test
+    public void testShardedIndexDDL() {
+        assertTrue(Schema.fromClass(WithShardedIndex.class).toDDL().contains(
+                "CREATE TABLE WithShardedIndex_country_idx (country text, shard int, WithShardedIndex_id uuid, PRIMARY KEY((country, shard), WithShardedIndex_id));"));
+    }
+
+    @Entity static class WithShardedOrderedIndex {
+        @Id private UUID id;
+        @Index(type=ORDERED, shards=8) @Column int age;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShardedOrderedIndex() {
+        Schema.fromClass(WithShardedOrderedIndex.class);
+    }
+
+    @Entity static class WithCountedIndex {
+        @Id private UUID id;
+        @Index(counted=true) @Column String country;
+    }
+
+    @Test
+    public void testCountedIndexDDL() {
+        assertTrue(Schema.fromClass(WithCountedIndex.class).toDDL().contains(
+                "CREATE TABLE WithCountedIndex_country_count (country text PRIMARY KEY, total counter);"));
+    }
+
+    @Entity static class WithCountedNativeIndex {
+        @Id private UUID id;
+        @Index(type=NATIVE, counted=true) @Column String country;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountedNativeIndex() {
+        Schema.fromClass(WithCountedNativeIndex.class);
+    }
+
+    @Test
+    public void testIdSetRelationDDL() {
+        String ddl = Schema.fromClass(Account.class).toDDL();
+
+        assertTrue(ddl.contains("CREATE TABLE accounts (id uuid PRIMARY KEY, name text, addresses_ids set<uuid>, phones set<blob>);"));
+        assertFalse(ddl.contains("CREATE TABLE accounts_addresses ("));
+        assertTrue(ddl.contains(
+                "CREATE TABLE accounts_addresses_rev (addresses_id uuid, accounts_id uuid, PRIMARY KEY(addresses_id, accounts_id));"));
+    }
+
+    @Entity static class WithCollidingRelation {
+        @Id private UUID id;
+        @EmbeddedCollection @Column Set<UUID> addresses_ids;
+        @OneToMany(storage=ID_SET) Collection<Address> addresses;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCollidingRelationColumn() {
+        Schema.fromClass(WithCollidingRelation.class);
+    }
+
+    @Test
+    public void testEmbeddedEncoding() {
+        EmbeddedSpec embeddedSpec = Schema.fromClass(Account.class).getEmbeddeds().iterator().next();
+        Set<Phone> phones = Sets.newHashSet(new Phone("work", "555-0100", 42), new Phone("home", "555-0199", null));
+
+        Set<ByteBuffer> encoded = embeddedSpec.encode(phones);
+
+        assertEquals(2, encoded.size());
+        assertEquals(encoded, embeddedSpec.encode(Sets.newHashSet(new Phone("work", "555-0100", 42), new Phone("home", "555-0199", null))));
+        assertEquals(phones, embeddedSpec.decode(encoded));
+        assertNull(embeddedSpec.encode(null));
+    }
+
+    static class Unembeddable {
+        @Column Set<String> tags;
+    }
+
+    @Entity static class WithBadEmbedded {
+        @Id private UUID id;
+        @Embedded @Column Set<Unembeddable> things;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadEmbedded() {
+        Schema.fromClass(WithBadEmbedded.class);
+    }
+
+    @Entity static class WithEmbeddedList {
+        @Id private UUID id;
+        @Embedded @Column List<Phone> phones;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmbeddedList() {
+        // Stored as a set, a list would lose its order and duplicates.
+        Schema.fromClass(WithEmbeddedList.class);
+    }
+
+    @Test
+    public void testCounterDDL() {
+        Schema schema = Schema.fromClass(Device.class);
+        String ddl = schema.toDDL();
+
+        assertTrue(ddl.contains("CREATE TABLE devices (id uuid PRIMARY KEY, "));
+        assertFalse(ddl.contains("hits bigint"));
+        assertTrue(ddl.contains("CREATE TABLE devices_counters (id uuid PRIMARY KEY, hits counter);"));
+        assertNotNull(schema.getCounter("hits"));
+        assertNull(schema.getColumn("hits"));
+    }
+
+    @Entity static class WithBadCounter {
+        @Id private UUID id;
+        @Column String name;
+        @Counter @Column int hits;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCounter() {
+        Schema.fromClass(WithBadCounter.class);
+    }
+
+    @Entity @Table(name="sessions", ttl=3600) static class WithTTL {
+        @Id private UUID id;
+        @Column String name;
+    }
+
+    @Test
+    public void testTTL() {
+        assertEquals(3600, Schema.fromClass(WithTTL.class).getTTL());
+        assertEquals(0, Schema.fromClass(User.class).getTTL());
+    }
+
+    @Entity @Table(name="expiring_counters", ttl=60) static class WithCounterTTL {
+        @Id private UUID id;
+        @Column String name;
+        @Counter @Column long hits;
+    }
+
     @Test(expected = IllegalArgumentException.class)
-    public void testBadListColumn() {
-        Schema.fromClass(BadListColumn.class);
+    public void testCounterTTL() {
+        Schema.fromClass(WithCounterTTL.class);
     }
 
 }
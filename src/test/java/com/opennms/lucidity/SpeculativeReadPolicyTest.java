@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.opennms.lucidity.SpeculativeReadPolicy.Attempt;
+
+
+public class SpeculativeReadPolicyTest {
+
+    /**
+     * Stands in for a driver session; Answers each attempt after an injected delay.
+     */
+    private class DelayedSession implements Attempt<String> {
+        private final long[] m_delays;
+        private final boolean m_failFirst;
+        private final AtomicInteger m_attempts = new AtomicInteger();
+
+        DelayedSession(boolean failFirst, long... delays) {
+            m_failFirst = failFirst;
+            m_delays = delays;
+        }
+
+        DelayedSession(long... delays) {
+            this(false, delays);
+        }
+
+        @Override
+        public ListenableFuture<String> start(boolean speculative) {
+            final int attempt = m_attempts.getAndIncrement();
+
+            if (attempt >= m_delays.length) {
+                return null;
+            }
+
+            final SettableFuture<String> future = SettableFuture.create();
+
+            m_scheduler.schedule(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    if (attempt == 0 && m_failFirst) {
+                        future.setException(new LucidityException("replica unavailable"));
+                    }
+                    else {
+                        future.set("attempt-" + attempt);
+                    }
+                    return null;
+                }
+            }, m_delays[attempt], TimeUnit.MILLISECONDS);
+
+            return future;
+        }
+
+        int getAttempts() {
+            return m_attempts.get();
+        }
+    }
+
+    private ScheduledExecutorService m_scheduler;
+
+    @Before
+    public void setUp() {
+        m_scheduler = Executors.newScheduledThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        m_scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testFastReadIsNotHedged() {
+
+        SpeculativeReadPolicy policy = SpeculativeReadPolicy.fixed(500, TimeUnit.MILLISECONDS);
+        DelayedSession session = new DelayedSession(5, 5);
+
+        assertEquals("attempt-0", policy.execute(session));
+        assertEquals(1, session.getAttempts());
+        assertEquals(0, policy.getHedged());
+
+    }
+
+    @Test
+    public void testSlowReadIsHedged() {
+
+        SpeculativeReadPolicy policy = SpeculativeReadPolicy.fixed(20, TimeUnit.MILLISECONDS);
+        DelayedSession session = new DelayedSession(2000, 5);
+
+        long start = System.nanoTime();
+
+        assertEquals("attempt-1", policy.execute(session));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(1, policy.getHedged());
+        assertEquals(1, policy.getHedgeWins());
+
+    }
+
+    @Test
+    public void testFirstResponseWins() {
+
+        SpeculativeReadPolicy policy = SpeculativeReadPolicy.fixed(20, TimeUnit.MILLISECONDS);
+        DelayedSession session = new DelayedSession(40, 2000);
+
+        assertEquals("attempt-0", policy.execute(session));
+        assertEquals(2, session.getAttempts());
+        assertEquals(0, policy.getHedgeWins());
+
+    }
+
+    @Test
+    public void testHedgeRefused() {
+
+        SpeculativeReadPolicy policy = SpeculativeReadPolicy.fixed(10, TimeUnit.MILLISECONDS);
+        DelayedSession session = new DelayedSession(50);
+
+        assertEquals("attempt-0", policy.execute(session));
+        assertEquals(0, policy.getHedged());
+
+    }
+
+    @Test
+    public void testFailedAttemptFallsBackToOther() {
+
+        SpeculativeReadPolicy policy = SpeculativeReadPolicy.fixed(10, TimeUnit.MILLISECONDS);
+        DelayedSession session = new DelayedSession(true, 50, 100);
+
+        assertEquals("attempt-1", policy.execute(session));
+
+    }
+
+    @Test(expected = LucidityException.class)
+    public void testFailureWithoutHedge() {
+        SpeculativeReadPolicy.fixed(500, TimeUnit.MILLISECONDS).execute(new DelayedSession(true, 5));
+    }
+
+    @Test
+    public void testPercentileThreshold() {
+
+        SpeculativeReadPolicy policy = SpeculativeReadPolicy.percentile(90.0d, 1, TimeUnit.SECONDS);
+
+        assertEquals(1000, policy.getDelay(TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < SpeculativeReadPolicy.MIN_SAMPLES; i++) {
+            policy.execute(new DelayedSession(1));
+        }
+
+        // Now derived from observed latencies, (a few milliseconds), rather than the initial delay.
+        assertTrue(policy.getDelay(TimeUnit.MILLISECONDS) < 1000);
+
+    }
+
+    @Test
+    public void testLatencyTracker() {
+
+        LatencyTracker tracker = new LatencyTracker(100, 99.0d);
+
+        assertEquals(-1, tracker.getPercentile());
+
+        for (int i = 1; i <= 200; i++) {
+            tracker.record(i);
+        }
+
+        // Only the most recent 100 samples (101 - 200) are retained.
+        assertEquals(100, tracker.size());
+        assertEquals(199, tracker.getPercentile());
+
+    }
+
+}
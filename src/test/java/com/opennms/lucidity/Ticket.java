@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static com.opennms.lucidity.annotations.IndexType.INVERTED;
+
+import java.util.UUID;
+
+import com.opennms.lucidity.annotations.Column;
+import com.opennms.lucidity.annotations.Entity;
+import com.opennms.lucidity.annotations.Id;
+import com.opennms.lucidity.annotations.Index;
+import com.opennms.lucidity.annotations.Table;
+
+
+/** An expiring entity, (created by cascade from a {@link Queue}). */
+@Entity
+@Table(name = "tickets", ttl = 2)
+class Ticket {
+
+    @Id
+    private UUID m_id;
+
+    @Index(type = INVERTED)
+    @Column(name = "summary")
+    private String m_summary;
+
+    Ticket() {
+
+    }
+
+    Ticket(String summary) {
+        m_summary = summary;
+    }
+
+    UUID getId() {
+        return m_id;
+    }
+
+    String getSummary() {
+        return m_summary;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s]", getClass().getSimpleName(), getSummary());
+    }
+
+}
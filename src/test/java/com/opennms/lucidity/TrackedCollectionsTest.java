@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.opennms.lucidity.TrackedCollections.TrackedList;
+import com.opennms.lucidity.TrackedCollections.TrackedList.Change;
+import com.opennms.lucidity.TrackedCollections.TrackedMap;
+import com.opennms.lucidity.TrackedCollections.TrackedSet;
+
+
+public class TrackedCollectionsTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSet() {
+
+        TrackedSet<String> set = (TrackedSet<String>) TrackedCollections.track(Sets.newHashSet("a", "b", "c"));
+        assertFalse(set.isChanged());
+
+        set.add("d");
+        set.add("a");
+        set.remove("b");
+        set.removeAll(Arrays.asList("c", "x"));
+
+        assertEquals(Sets.newHashSet("d"), set.getAdded());
+        assertEquals(Sets.<Object> newHashSet("b", "c"), set.getRemoved());
+
+        // Added and removed again, (or the reverse) is no change.
+        set.add("b");
+        set.remove("d");
+
+        Iterator<String> iterator = set.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().equals("a")) iterator.remove();
+        }
+
+        assertEquals(Sets.newHashSet(), set.getAdded());
+        assertEquals(Sets.<Object> newHashSet("a", "c"), set.getRemoved());
+        assertEquals(Sets.newHashSet("b"), set);
+        assertFalse(set.isOverwritten());
+
+        set.drain(false);
+        assertFalse(set.isChanged());
+
+        set.clear();
+        assertTrue(set.isOverwritten());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMap() {
+
+        TrackedMap<String, String> map = (TrackedMap<String, String>) TrackedCollections.trackCopy(ImmutableMap.of("a", "1", "b", "2", "c", "3"));
+        assertFalse(map.isChanged());
+
+        map.put("d", "4");
+        map.remove("a");
+        map.remove("x");
+        map.keySet().remove("b");
+
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (entry.getKey().equals("c")) entry.setValue("5");
+        }
+
+        assertEquals(ImmutableMap.of("c", "5", "d", "4"), map.getPut());
+        assertEquals(Sets.<Object> newHashSet("a", "b"), map.getRemoved());
+
+        map.put("a", "6");
+        map.values().remove("4");
+
+        assertEquals(ImmutableMap.of("a", "6", "c", "5"), map.getPut());
+        assertEquals(Sets.<Object> newHashSet("b", "d"), map.getRemoved());
+        assertEquals(ImmutableMap.of("a", "6", "c", "5"), map);
+        assertFalse(map.isOverwritten());
+
+        map.drain(false);
+        map.clear();
+        assertTrue(map.isOverwritten());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testList() {
+
+        List<String> past = Arrays.asList("a", "b");
+        TrackedList<String> list = (TrackedList<String>) TrackedCollections.trackCopy(past);
+
+        list.add("c");
+        list.addAll(Arrays.asList("d", "e"));
+
+        assertEquals(Change.APPEND, list.getChange());
+        assertEquals(Arrays.asList("c", "d", "e"), list.getAdded());
+
+        list.drain(false);
+        list.add(0, "y");
+        list.addAll(0, Arrays.asList("w", "x"));
+
+        assertEquals(Change.PREPEND, list.getChange());
+        assertEquals(Arrays.asList("w", "x", "y"), list.getAdded());
+
+        list.drain(false);
+        list.set(1, "z");
+        ListIterator<String> iterator = list.listIterator(2);
+        iterator.next();
+        iterator.set("q");
+
+        assertEquals(Change.SET, list.getChange());
+        assertEquals(ImmutableMap.of(1, "z", 2, "q"), list.getSet());
+
+        // Different kinds of change, (or a removal), overwrite the list.
+        list.add("f");
+        assertTrue(list.isOverwritten());
+
+        list.drain(false);
+        list.subList(0, 2).clear();
+        assertTrue(list.isOverwritten());
+        assertEquals(Arrays.asList("q", "a", "b", "c", "d", "e", "f"), list);
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCopiesCollection() {
+
+        Map<String, String> favorites = new ConcurrentHashMap<String, String>();
+        TrackedMap<String, String> map = (TrackedMap<String, String>) TrackedCollections.trackCopy(favorites);
+
+        // Changes go to the copy, (a reference kept to the original is detached) ...
+        map.put("a", "1");
+        favorites.put("b", "2");
+        assertFalse(favorites.containsKey("a"));
+        assertFalse(map.containsKey("b"));
+        assertEquals(ImmutableMap.of("a", "1"), map.getPut());
+
+        // ... which is of the same kind.
+        assertTrue(map.delegate() instanceof ConcurrentMap);
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCopyOf() {
+
+        SortedSet<String> reversed = new TreeSet<String>(Collections.reverseOrder());
+        reversed.addAll(Arrays.asList("a", "b", "c"));
+
+        SortedSet<String> copy = (SortedSet<String>) TrackedCollections.copyOf(reversed);
+        copy.add("d");
+        assertEquals(Arrays.asList("d", "c", "b", "a"), Lists.newArrayList(copy));
+
+        assertTrue(TrackedCollections.copyOf(new ConcurrentSkipListMap<String, String>()) instanceof ConcurrentNavigableMap);
+        assertTrue(TrackedCollections.copyOf(new CopyOnWriteArrayList<String>()) instanceof CopyOnWriteArrayList);
+        assertEquals(Arrays.asList("b", "a"), TrackedCollections.copyOf(Arrays.asList("b", "a")));
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDrain() {
+
+        TrackedSet<String> set = (TrackedSet<String>) TrackedCollections.track(Sets.newHashSet("a"));
+        set.add("b");
+
+        // The update drains what it writes; Changes made meanwhile are left for the next.
+        TrackedSet<String> drained = set.drain(false);
+        set.add("c");
+        set.remove("a");
+
+        assertEquals(Sets.newHashSet("b"), drained.getAdded());
+        assertTrue(drained.isEmpty());
+        assertEquals(Sets.newHashSet("c"), set.getAdded());
+        assertEquals(Sets.<Object> newHashSet("a"), set.getRemoved());
+
+        // Whole, (or overwritten), the contents are copied as they stood.
+        drained = set.drain(true);
+        set.add("d");
+        assertEquals(Sets.newHashSet("b", "c"), drained);
+
+        // Drained, but never written; The next update writes the whole collection.
+        set.overwrite();
+        assertTrue(set.isOverwritten());
+        assertEquals(Sets.newHashSet("b", "c", "d"), set.drain(false));
+        assertFalse(set.isChanged());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChangesDuringDrain() throws InterruptedException {
+
+        final TrackedMap<String, String> map = (TrackedMap<String, String>) TrackedCollections.track(new ConcurrentHashMap<String, String>());
+        final CountDownLatch done = new CountDownLatch(4);
+        Map<String, String> written = Maps.newHashMap();
+
+        for (int i = 0; i < 4; i++) {
+            final int thread = i;
+
+            new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 5000; j++) {
+                        map.put(String.format("%d-%d", thread, j), "value");
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+
+        // Drain (as updates would) while the writers are busy; Every change is drained exactly once.
+        while (done.getCount() > 0) {
+            written.putAll(map.drain(false).getPut());
+        }
+
+        written.putAll(map.drain(false).getPut());
+
+        assertEquals(20000, written.size());
+        assertEquals(20000, map.size());
+
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.opennms.lucidity.WriteRetryPolicy.Attempt;
+
+
+public class WriteRetryPolicyTest {
+
+    /**
+     * Stands in for a driver session; Times out a given number of times, before succeeding.
+     */
+    private static class TimingOutSession implements Attempt<String> {
+        private final int m_timeouts;
+        private final WriteType m_type;
+        private int m_attempts = 0;
+
+        TimingOutSession(int timeouts, WriteType type) {
+            m_timeouts = timeouts;
+            m_type = type;
+        }
+
+        @Override
+        public String execute() {
+            if (m_attempts++ < m_timeouts) {
+                throw new WriteTimeoutException(ConsistencyLevel.QUORUM, m_type, 1, 2);
+            }
+            return "ok";
+        }
+    }
+
+    @Test
+    public void testRetry() {
+
+        WriteRetryPolicy policy = WriteRetryPolicy.retries(3, 1, TimeUnit.MILLISECONDS);
+        TimingOutSession session = new TimingOutSession(2, WriteType.BATCH);
+
+        assertEquals("ok", policy.execute(session));
+        assertEquals(3, session.m_attempts);
+        assertEquals(1, policy.getWrites());
+        assertEquals(2, policy.getRetries());
+        assertEquals(0, policy.getTimeouts());
+    }
+
+    @Test
+    public void testRetriesExhausted() {
+
+        WriteRetryPolicy policy = WriteRetryPolicy.retries(2, 1, TimeUnit.MILLISECONDS);
+        TimingOutSession session = new TimingOutSession(5, WriteType.SIMPLE);
+
+        try {
+            policy.execute(session);
+            fail("expected timeout");
+        }
+        catch (WriteTimeoutException e) {
+            assertEquals(3, session.m_attempts);
+            assertEquals(2, policy.getRetries());
+            assertEquals(1, policy.getTimeouts());
+        }
+    }
+
+    @Test
+    public void testCounterNotRetried() {
+
+        WriteRetryPolicy policy = WriteRetryPolicy.retries(3, 1, TimeUnit.MILLISECONDS);
+        TimingOutSession session = new TimingOutSession(1, WriteType.COUNTER);
+
+        try {
+            policy.execute(session);
+            fail("expected timeout");
+        }
+        catch (WriteTimeoutException e) {
+            assertEquals(1, session.m_attempts);
+            assertEquals(0, policy.getRetries());
+        }
+    }
+
+    @Test
+    public void testOtherFailuresNotRetried() {
+
+        WriteRetryPolicy policy = WriteRetryPolicy.retries(3, 1, TimeUnit.MILLISECONDS);
+        final int[] attempts = { 0 };
+
+        try {
+            policy.execute(new Attempt<String>() {
+
+                @Override
+                public String execute() {
+                    attempts[0]++;
+                    throw new UnavailableException(ConsistencyLevel.QUORUM, 2, 1);
+                }
+            });
+            fail("expected unavailable");
+        }
+        catch (UnavailableException e) {
+            assertEquals(1, attempts[0]);
+            assertEquals(0, policy.getRetries());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRetries() {
+        WriteRetryPolicy.retries(-1, 1, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013, The OpenNMS Group
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.opennms.lucidity;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+
+public class WriteTimestampsTest {
+
+    @Test
+    public void testMonotonic() {
+
+        WriteTimestamps timestamps = new WriteTimestamps();
+        long last = timestamps.next();
+
+        // Many more than one per microsecond, (or millisecond, of the clock).
+        for (int i = 0; i < 10000; i++) {
+            long next = timestamps.next();
+            assertTrue(next > last);
+            last = next;
+        }
+
+        long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        assertTrue(Math.abs(now - last) < TimeUnit.SECONDS.toMicros(10));
+    }
+
+    @Test
+    public void testClockGoesBackwards() {
+
+        final long[] clock = { 1000000 };
+        WriteTimestamps timestamps = new WriteTimestamps() {
+
+            @Override
+            long currentTimeMicros() {
+                return clock[0];
+            }
+        };
+
+        assertEquals(1000000, timestamps.next());
+
+        clock[0] = 500000;
+        assertEquals(1000001, timestamps.next());
+        assertEquals(1000002, timestamps.next());
+
+        clock[0] = 2000000;
+        assertEquals(2000000, timestamps.next());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+
+        final WriteTimestamps timestamps = new WriteTimestamps();
+        final Set<Long> seen = Sets.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final CountDownLatch done = new CountDownLatch(4);
+
+        for (int i = 0; i < 4; i++) {
+            new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 5000; j++) {
+                        seen.add(timestamps.next());
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+
+        done.await();
+
+        // No two writes ever share a timestamp.
+        assertEquals(20000, seen.size());
+    }
+
+}